@@ -15,11 +15,14 @@ public class AccessFlags{
     I used a Set anyway because it was 
     convenient for checkAccess()*/
 	private final Set<Flag> flags;
+	/*The flags as they appeared in the class file*/
+	private final int mask;
 	
 	public AccessFlags(int accessFlags) throws InvalidFlagException,
                                                     IOException
     {
     	flags = new HashSet<Flag>();
+    	mask = accessFlags;
 
     	/*perform logical AND on all possible 
         flags to see which flags are set*/
@@ -48,6 +51,18 @@ public class AccessFlags{
     }
 
 
+    public int getMask(){
+    	return mask;
+    }
+
+    /*Estimate of the memory held by the flag set*/
+    public void addFootprint(final Footprint fp)
+    {
+        fp.addObject(Footprint.Category.STRUCTURE, this);
+        fp.addSet(Footprint.Category.STRUCTURE, flags);
+    }
+
+
     /*String representation of set flags*/
     public String toString(final int tabs)
     {
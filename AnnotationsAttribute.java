@@ -0,0 +1,92 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * Annotations on a Class, Field or Method. Only the type of each top
+ * level annotation is kept, not the element values.
+ *
+ * @author Luke Mercuri
+ */
+class AnnotationsAttribute extends AttributeInfo
+{
+    private final String name;
+    private final int length;
+    private final String types[];
+
+    public AnnotationsAttribute(final DataInputStream dis, final ConstantPool cp, final String name) 
+        throws IOException, InvalidConstantPoolIndex
+    {
+        this.name = name;
+        length = dis.readUnsignedShort() << 16 | dis.readUnsignedShort();
+
+        types = new String[dis.readUnsignedShort()];
+        for(int i = 0; i < types.length; i++){
+            types[i] = readAnnotation(dis, cp);
+        }
+    }
+
+    /*Reads an annotation struct, returning its type descriptor*/
+    private static String readAnnotation(final DataInputStream dis, final ConstantPool cp) 
+        throws IOException, InvalidConstantPoolIndex
+    {
+        final String type = cp.getUtf8(dis.readUnsignedShort());
+        final int numPairs = dis.readUnsignedShort();
+
+        for(int i = 0; i < numPairs; i++){
+            //element_name_index
+            dis.readUnsignedShort();
+            skipElementValue(dis, cp);
+        }
+
+        return type;
+    }
+
+    private static void skipElementValue(final DataInputStream dis, final ConstantPool cp) 
+        throws IOException, InvalidConstantPoolIndex
+    {
+        final char tag = (char)dis.readUnsignedByte();
+
+        switch(tag){
+            //enum: type_name_index, const_name_index
+            case 'e':
+                dis.readUnsignedShort();
+                dis.readUnsignedShort();
+                break;
+            case '@':
+                readAnnotation(dis, cp);
+                break;
+            case '[':
+                final int numValues = dis.readUnsignedShort();
+                for(int i = 0; i < numValues; i++){
+                    skipElementValue(dis, cp);
+                }
+                break;
+            //constants and classes: a single index
+            default:
+                dis.readUnsignedShort();
+        }
+    }
+
+    /*Whether an annotation of the given type (eg "Ljava/lang/Deprecated;") is present*/
+    public boolean hasType(final String type){
+        for(String t: types){
+            if(t.equals(type)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public String getValues(){ return Arrays.toString(types); }
+    public String getNameString(){ return name; }
+    public int getLength() { return length; }
+
+    public void addFootprint(final Footprint fp)
+    {
+        super.addFootprint(fp);
+        fp.addArray(Footprint.Category.STRUCTURE, types);
+        for(String type: types){
+            fp.addString(Footprint.Category.STRINGS, type);
+        }
+    }
+}
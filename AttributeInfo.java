@@ -1,9 +1,10 @@
 import java.io.*;
+import java.util.*;
 
 /**
  * Stores an Attribute of a [Class|Field|Method]
  * Due to time constraints and the fact the assignment doesn't 
- * require support, This only supports two attribute types
+ * require support, This only supports a few attribute types
  *
  * @author Luke Mercuri
  */
@@ -19,7 +20,7 @@ public abstract class AttributeInfo
                                                      CodeParsingException
     {
 
-        final String name = ((ConstantUtf8)cp.getEntry(dis.readUnsignedShort())).getBytes();
+        final String name = cp.getUtf8(dis.readUnsignedShort());
         AttributeInfo attribute;
 
         //This should be a case but apparently the labs still run java 6...
@@ -29,6 +30,13 @@ public abstract class AttributeInfo
         else if("SourceFile".equals(name)){
             attribute = new SourceFileAttribute(dis, cp);
         }
+        else if("RuntimeVisibleAnnotations".equals(name) ||
+            "RuntimeInvisibleAnnotations".equals(name)){
+            attribute = new AnnotationsAttribute(dis, cp, name);
+        }
+        else if("BootstrapMethods".equals(name)){
+            attribute = new BootstrapMethodsAttribute(dis, cp);
+        }
         else{
             attribute = new OtherAttribute(dis, name);
         }
@@ -48,6 +56,12 @@ public abstract class AttributeInfo
     }
 
     public abstract int getLength();
+
+    /*Estimate of the memory held by this attribute*/
+    public void addFootprint(final Footprint fp)
+    {
+        fp.addObject(Footprint.Category.STRUCTURE, this);
+    }
 }
 
 /*Only relevant to Classes, attribute specifies 
@@ -62,11 +76,18 @@ class SourceFileAttribute extends AttributeInfo
     {
         /*Lookup filename in constant pool*/
         length = dis.readUnsignedShort() << 16 | dis.readUnsignedShort();
-        sourcefileName = ((ConstantUtf8)cp.getEntry(dis.readUnsignedShort())).getBytes();
+        sourcefileName = cp.getUtf8(dis.readUnsignedShort());
     }  
 
     public String getValues() { return sourcefileName; }
     public String getNameString(){ return "SourceFile"; }  
+
+    public void addFootprint(final Footprint fp)
+    {
+        super.addFootprint(fp);
+        fp.addString(Footprint.Category.STRINGS, sourcefileName);
+    }
+
     public int getLength() { return length; }
 
 }
@@ -96,5 +117,13 @@ class OtherAttribute extends AttributeInfo
 
     public String getNameString(){ return name; }
 
+    /*The raw attribute contents are kept as a String*/
+    public void addFootprint(final Footprint fp)
+    {
+        super.addFootprint(fp);
+        fp.addString(Footprint.Category.ATTRIBUTES, bytes);
+        fp.addString(Footprint.Category.STRINGS, name);
+    }
+
     public int getLength() { return length; }
 }
@@ -0,0 +1,34 @@
+/**
+ * A single entry of the BootstrapMethods attribute.
+ *
+ * @author Luke Mercuri
+ */
+class BootstrapMethod
+{
+    private final ConstantMethodHandle handle;
+    private final CPEntry arguments[];
+
+    public BootstrapMethod(final ConstantMethodHandle handle, final CPEntry[] arguments)
+    {
+        this.handle = handle;
+        this.arguments = arguments;
+    }
+
+    public ConstantMethodHandle getHandle(){ return handle; }
+
+    public CPEntry getArgument(final int index){ return arguments[index]; }
+    public int argumentCount(){ return arguments.length; }
+
+    /*Class and name of the bootstrap method, in internal form*/
+    public String getHandleName()
+    {
+        final ConstantRef ref = handle.getReference();
+        return (ref == null) ? handle.getValues() : ref.getClassName() + "." + ref.getName();
+    }
+
+    public void addFootprint(final Footprint fp)
+    {
+        fp.addObject(Footprint.Category.STRUCTURE, this);
+        fp.addArray(Footprint.Category.STRUCTURE, arguments);
+    }
+}
@@ -0,0 +1,92 @@
+import java.io.*;
+
+/**
+ * Only relevant to Classes, the bootstrap methods invokedynamic
+ * instructions refer to. Most reports never look at them, so the raw
+ * bytes are kept and only decoded the first time they're asked for.
+ *
+ * @author Luke Mercuri
+ */
+class BootstrapMethodsAttribute extends AttributeInfo
+{
+    private final int length;
+    private final byte bytes[];
+    private final ConstantPool cp;
+    private BootstrapMethod methods[] = null;
+
+    public BootstrapMethodsAttribute(final DataInputStream dis, final ConstantPool cp) throws IOException
+    {
+        length = dis.readUnsignedShort() << 16 | dis.readUnsignedShort();
+        bytes = new byte[length];
+        dis.readFully(bytes);
+        this.cp = cp;
+    }
+
+    /*Decode every bootstrap_methods entry, if it hasn't been done already*/
+    private synchronized BootstrapMethod[] getMethods() throws InvalidConstantPoolIndex
+    {
+        if(methods == null)
+        {
+            final BootstrapMethod decoded[] = new BootstrapMethod[CodeAttribute.u2(bytes, 0)];
+            int offset = 2;
+
+            for(int i = 0; i < decoded.length; i++){
+                final ConstantMethodHandle handle = 
+                    (ConstantMethodHandle)cp.getEntry(CodeAttribute.u2(bytes, offset));
+                final CPEntry arguments[] = new CPEntry[CodeAttribute.u2(bytes, offset + 2)];
+                offset += 4;
+
+                for(int a = 0; a < arguments.length; a++, offset += 2){
+                    arguments[a] = cp.getEntry(CodeAttribute.u2(bytes, offset));
+                }
+                decoded[i] = new BootstrapMethod(handle, arguments);
+            }
+            methods = decoded;
+        }
+        return methods;
+    }
+
+    public BootstrapMethod getMethod(final int index) throws InvalidConstantPoolIndex
+    {
+        return getMethods()[index];
+    }
+
+    public int methodCount() throws InvalidConstantPoolIndex
+    {
+        return getMethods().length;
+    }
+
+    public String getValues()
+    {
+        final StringBuffer s = new StringBuffer();
+        try
+        {
+            for(BootstrapMethod method: getMethods()){
+                s.append(method.getHandleName()).append(' ');
+            }
+        }
+        catch(InvalidConstantPoolIndex e)
+        {
+            s.append(e.getMessage());
+        }
+        return s.toString().trim();
+    }
+
+    public String getNameString(){ return "BootstrapMethods"; }
+
+    /*Only the raw bytes, unless something has decoded them*/
+    public synchronized void addFootprint(final Footprint fp)
+    {
+        super.addFootprint(fp);
+        fp.addArray(Footprint.Category.ATTRIBUTES, bytes);
+        if(methods != null)
+        {
+            fp.addArray(Footprint.Category.STRUCTURE, methods);
+            for(BootstrapMethod method: methods){
+                method.addFootprint(fp);
+            }
+        }
+    }
+
+    public int getLength() { return length; }
+}
@@ -51,6 +51,12 @@ public abstract class CPEntry
     public void resolveReferences(final ConstantPool cp) 
     throws InvalidConstantPoolIndex {}
 
+    /** Adds an estimate of the memory held by this entry. */
+    public void addFootprint(final Footprint fp)
+    {
+        fp.addObject(Footprint.Category.CONSTANT_POOL, this);
+    }
+
     /** Returns a string indicating the type of entry. */
     public abstract String getTagString();
 
@@ -74,28 +80,6 @@ public abstract class CPEntry
 }
 
 
-/** Represents a CONSTANT_Utf8 entry (tag == 1). */
-class ConstantUtf8 extends CPEntry
-{
-    final private String bytes;
-
-    public ConstantUtf8(final DataInputStream dis) throws IOException
-    {
-        final int length = dis.readUnsignedShort();
-        final byte[] b = new byte[length];
-        dis.readFully(b);
-        this.bytes = new String(b);
-    }
-
-    public String getBytes()     { return bytes; }
-    public String getTagString() { return "Utf8"; }
-    public String getValues()
-    {
-        return bytes.replace("\n","\\n");
-    }
-}
-
-
 /** Represents a CONSTANT_Integer entry (tag == 3). */
 class ConstantInteger extends CPEntry
 {
@@ -171,43 +155,6 @@ class ConstantDouble extends CPEntry
     public String getValues() { return String.format("%f", value); }
 }
 
-/**
- * Represents a CONSTANT_Class entry (tag == 7). This holds a reference to a 
- * Utf8 entry containing a class name (just a raw index until 
- * resolveReferences() is called).
- */
-class ConstantClass extends CPEntry
-{
-    private final int nameIndex;
-    private ConstantUtf8 nameEntry = null;
-
-    public ConstantClass(final DataInputStream dis) throws IOException
-    {
-        this.nameIndex = dis.readUnsignedShort();
-    }
-
-    public void resolveReferences(final ConstantPool cp)
-        throws InvalidConstantPoolIndex
-    {
-        this.nameEntry = (ConstantUtf8)cp.getEntry(nameIndex);
-    }
-
-    public int getNameIndex()    { return nameIndex; }
-    public String getName()      { return nameEntry.getBytes(); }
-
-    public String getTagString() { return "Class"; }
-    public String getValues()
-    {
-        return String.format("name_index=0x%02x", nameIndex);
-    }
-
-    public String toString(final int tabs){
-        final StringBuffer s = new StringBuffer(Grosstab.str(tabs));
-        s.append((nameEntry == null) ? getValues() : getName());
-        return s.toString();
-    }
-}
-
 
 /**
  * Represents a CONSTANT_String entry (tag == 8). This holds a reference to a
@@ -247,56 +194,6 @@ class ConstantString extends CPEntry
 }
 
 
-/**
- * Abstract superclass for the three CONSTANT_xxxref entry types. These
- * contain references to a ConstantClass entry and to a ConstantNameAndType
- * entry (both just raw indexes until resolveReferences() is called).
- */
-abstract class ConstantRef extends CPEntry
-{
-    private final int classIndex;
-    private final int nameAndTypeIndex;
-
-    private ConstantClass classEntry = null;
-    private ConstantNameAndType nameAndTypeEntry = null;
-
-    public ConstantRef(final DataInputStream dis) throws IOException
-    {
-        this.classIndex = dis.readUnsignedShort();
-        this.nameAndTypeIndex = dis.readUnsignedShort();
-    }
-
-    public void resolveReferences(final ConstantPool cp)
-        throws InvalidConstantPoolIndex
-    {
-        this.classEntry = (ConstantClass)cp.getEntry(classIndex);
-        this.nameAndTypeEntry =
-            (ConstantNameAndType)cp.getEntry(nameAndTypeIndex);
-    }
-
-    public int getClassIndex()          { return classIndex; }
-    public int getNameAndTypeIndex()    { return nameAndTypeIndex; }
-
-    public String getClassName()        { return classEntry.getName(); }
-    public String getName()             { return nameAndTypeEntry.getName(); }
-    public String getType()             { return nameAndTypeEntry.getType(); }
-
-    public String getValues()
-    {
-        return String.format("class_index=0x%02x, name_and_type_index=0x%02x",
-            classIndex, nameAndTypeIndex);
-    }
-
-    /*if name resolved, print it.  else print getValues()*/
-    public String toString(final int tabs){
-        final StringBuffer s = new StringBuffer(Grosstab.str(tabs)); 
-        s.append((classEntry == null || nameAndTypeEntry == null) ? getValues() : 
-        ("Class: " + getClassName()));
-        s.append((nameAndTypeEntry == null) ? "" : nameAndTypeEntry.toString(tabs));
-        return s.toString();
-    }
-}
-
 /** Represents a CONSTANT_Fieldref entry (tag == 9). */
 class ConstantFieldRef extends ConstantRef
 {
@@ -330,96 +227,6 @@ class ConstantInterfaceMethodRef extends ConstantRef
     public String getTagString() { return "InterfaceMethodref"; }
 }
 
-/**
- * Represents a CONSTANT_NameAndType entry (tag == 12). This holds references 
- * to two Utf8 entries containing the "name" and "type" (or descriptor) of a
- * field or method (both just raw indexes until resolveReferences() is
- * called).
- */
-class ConstantNameAndType extends CPEntry
-{
-    private final int nameIndex;
-    private final int typeIndex;
-
-    private ConstantUtf8 nameEntry = null;
-    private ConstantUtf8 typeEntry = null;
-
-    public ConstantNameAndType(final DataInputStream dis) throws IOException
-    {
-        this.nameIndex = dis.readUnsignedShort();
-        this.typeIndex = dis.readUnsignedShort();
-    }
-
-    public void resolveReferences(final ConstantPool cp)
-        throws InvalidConstantPoolIndex
-    {
-        this.nameEntry = (ConstantUtf8)cp.getEntry(nameIndex);
-        this.typeEntry = (ConstantUtf8)cp.getEntry(typeIndex);
-    }
-
-    public int getNameIndex()    { return nameIndex; }
-    public int getTypeIndex()    { return typeIndex; }
-
-    public String getName()      { return nameEntry.getBytes(); }
-    public String getType()      { return typeEntry.getBytes(); }
-
-    public String getTagString() { return "NameAndType"; }
-    public String getValues()
-    {
-        return String.format("name_index=0x%02x, type_index=0x%02x",
-            nameIndex, typeIndex);
-    }
-
-    public String toString(final int tabs){
-        final StringBuffer s = new StringBuffer(Grosstab.str(tabs)); 
-        s.append((nameEntry == null) ? getValues() : " Name: ");
-        s.append(getName());
-        s.append(" Type: ");
-        s.append(getType());
-        return s.toString();
-    }
-}
-
-
-/**
- * Represents a CONSTANT_MethodHandle entry (tag == 15).
- */
-class ConstantMethodHandle extends CPEntry
-{
-    private final byte kind;
-    private final int index;
-    private CPEntry entry = null;
-    
-    public ConstantMethodHandle(final DataInputStream dis) throws IOException
-    {
-        this.kind = dis.readByte();
-        this.index = dis.readUnsignedShort();
-    }
-    
-    public void resolveReferences(final ConstantPool cp)
-        throws InvalidConstantPoolIndex
-    {
-        this.entry = cp.getEntry(index);
-    }
-    
-    public byte getKind()     { return kind; }
-    public int getIndex()     { return index; }
-    public CPEntry getEntry() { return entry; }
-    
-    public String getTagString() { return "MethodHandle"; }
-    public String getValues()
-    {
-        return String.format("reference_kind=%d, reference_index=0x%02x", 
-                             kind, index);
-    }
-
-    public String toString(final int tabs){
-        final StringBuffer s = new StringBuffer(Grosstab.str(tabs)); 
-        s.append((entry == null) ? getValues() : entry.toString(tabs));
-        return s.toString();
-    }
-}
-
 
 /**
  * Represents a CONSTANT_MethodType entry (tag == 16).
@@ -455,59 +262,3 @@ class ConstantMethodType extends CPEntry
         return s.toString();
     }
 }
-
-
-/**
- * Represents a CONSTANT_InvokeDynamic entry (tag == 18). Such entries are used
- * in conjunction with the invokedynamic instruction to determine which method 
- * should actually be invoked.
- */
-class ConstantInvokeDynamic extends CPEntry
-{
-    private final int bootstrapMethodIndex;
-    private final int nameAndTypeIndex;
-    
-    private ConstantNameAndType nameAndTypeEntry = null;
-
-    public ConstantInvokeDynamic(final DataInputStream dis) throws IOException
-    {
-        this.bootstrapMethodIndex = dis.readUnsignedShort();
-        this.nameAndTypeIndex = dis.readUnsignedShort();
-    }
-
-    public void resolveReferences(final ConstantPool cp)
-        throws InvalidConstantPoolIndex
-    {
-        this.nameAndTypeEntry =
-            (ConstantNameAndType)cp.getEntry(nameAndTypeIndex);
-    }
-
-    public int getBootstrapMethodIndex() { return bootstrapMethodIndex; }
-    public int getNameAndTypeIndex()     { return nameAndTypeIndex; }
-    public String getName()              { return nameAndTypeEntry.getName(); }
-    public String getType()              { return nameAndTypeEntry.getType(); }
-
-    public String getTagString() { return "InvokeDynamic"; }
-    public String getValues()
-    {
-        return String.format(
-            "bootstrap_method_attr_index=0x%02x, name_and_type_index=0x%02x",
-            bootstrapMethodIndex, nameAndTypeIndex);
-    }
-
-    public String toString(final int tabs){
-        return Grosstab.str(tabs) + String.format(
-            "Bootstrap method: %s, Name: %s, Type: %s",
-            bootstrapMethodIndex, getName(), getType());
-    }
-}
-
-
-/**
- * Thrown when an unknown tag value is encountered (i.e. one that does not
- * indicate a known constant pool entry type.)
- */
-class InvalidTagException extends ClassFileParserException
-{
-    public InvalidTagException(final String msg) { super(msg); }
-}
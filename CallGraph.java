@@ -0,0 +1,225 @@
+import java.util.*;
+
+/**
+ * A corpus-wide call graph. Every method gets an int id: those declared by
+ * one of the parsed classes come first, followed by methods that are only
+ * ever called (library code and the like). Edges come from the invoke
+ * instructions in each Code attribute, one edge per call site, and are held
+ * in compressed sparse row form in both directions so that callees and
+ * callers of a method can be walked without creating any objects.
+ *
+ * Calls naming a parsed class that only inherits the method are pointed at
+ * the superclass that actually declares it.
+ *
+ * @author Luke Mercuri
+ */
+public class CallGraph
+{
+    /*owner (internal form), name and descriptor of each method id*/
+    private final String owners[];
+    private final String names[];
+    private final String descriptors[];
+
+    /*Parsed class and method for ids below declaredCount*/
+    private final ClassFile classes[];
+    private final MethodInfo methods[];
+    private final int declaredCount;
+
+    private final Map<String, Integer> ids;
+
+    /*callees of method i are callees[calleeStart[i] .. calleeStart[i+1]-1]*/
+    private final int calleeStart[];
+    private final int callees[];
+    private final int callerStart[];
+    private final int callers[];
+
+    private CallGraph(final Builder builder)
+    {
+        final int numMethods = builder.owners.size();
+
+        owners = builder.owners.toArray(new String[numMethods]);
+        names = builder.names.toArray(new String[numMethods]);
+        descriptors = builder.descriptors.toArray(new String[numMethods]);
+        classes = builder.classes.toArray(new ClassFile[builder.classes.size()]);
+        methods = builder.methods.toArray(new MethodInfo[builder.methods.size()]);
+        declaredCount = methods.length;
+        ids = builder.ids;
+
+        final int sources[] = builder.sources.toArray();
+        final int targets[] = builder.targets.toArray();
+
+        calleeStart = new int[numMethods + 1];
+        callees = new int[sources.length];
+        fillRows(sources, targets, calleeStart, callees);
+
+        callerStart = new int[numMethods + 1];
+        callers = new int[sources.length];
+        fillRows(targets, sources, callerStart, callers);
+    }
+
+    /*Counting sort of (from, to) pairs into CSR row offsets and columns*/
+    static void fillRows(final int from[], final int to[], final int start[], final int columns[])
+    {
+        for(int e = 0; e < from.length; e++){
+            start[from[e] + 1]++;
+        }
+        for(int i = 1; i < start.length; i++){
+            start[i] += start[i - 1];
+        }
+
+        final int next[] = Arrays.copyOf(start, start.length - 1);
+        for(int e = 0; e < from.length; e++){
+            columns[next[from[e]]++] = to[e];
+        }
+    }
+
+
+    /*Build the graph over every method of every parsed class*/
+    public static CallGraph build(final ClassFile[] classes)
+    {
+        final Builder builder = new Builder();
+        final Map<String, ClassFile> byName = new HashMap<String, ClassFile>();
+
+        /*Declared methods get the first ids (a class given
+        twice shares the ids of its first copy)*/
+        final IntList methodIds = new IntList();
+        for(ClassFile cf: classes){
+            byName.put(cf.getName(), cf);
+            for(int m = 0; m < cf.methodCount(); m++){
+                final MethodInfo method = cf.getMethod(m);
+                final int id = builder.idOf(cf.getName(), method.getName(), method.getDescriptor());
+                if(id == builder.methods.size()){
+                    builder.classes.add(cf);
+                    builder.methods.add(method);
+                }
+                methodIds.add(id);
+            }
+        }
+
+        int next = 0;
+        for(ClassFile cf: classes){
+            for(int m = 0; m < cf.methodCount(); m++){
+                final int source = methodIds.get(next++);
+                final CodeAttribute code = cf.getMethod(m).getCode();
+                if(code == null || builder.methods.get(source) != cf.getMethod(m)){
+                    continue;
+                }
+
+                for(int index: code.getInvokeIndexes()){
+                    try
+                    {
+                        final ConstantRef ref = cf.getMethodRefFromCPIndex(index);
+                        final String owner = builder.resolveOwner(byName,
+                            ref.getClassName(), ref.getName(), ref.getType());
+
+                        builder.sources.add(source);
+                        builder.targets.add(builder.idOf(owner, ref.getName(), ref.getType()));
+                    }
+                    catch(InvalidConstantPoolIndex e)
+                    {
+                        System.out.println(e.getMessage());
+                    }
+                }
+            }
+        }
+
+        return new CallGraph(builder);
+    }
+
+
+    public int methodCount(){ return owners.length; }
+
+    public int declaredCount(){ return declaredCount; }
+
+    public int edgeCount(){ return callees.length; }
+
+    /*True if the method belongs to one of the parsed classes*/
+    public boolean isDeclared(final int id){ return id < declaredCount; }
+
+    /*Id of a method, or -1 if it is neither declared nor called*/
+    public int getId(final String owner, final String name, final String descriptor)
+    {
+        final Integer id = ids.get(key(owner, name, descriptor));
+        return id == null ? -1 : id;
+    }
+
+    public String getOwner(final int id){ return owners[id]; }
+    public String getName(final int id){ return names[id]; }
+    public String getDescriptor(final int id){ return descriptors[id]; }
+
+    /*Only available for declared methods*/
+    public ClassFile getClassFile(final int id){ return classes[id]; }
+    public MethodInfo getMethodInfo(final int id){ return methods[id]; }
+
+    public int calleeCount(final int id){ return calleeStart[id + 1] - calleeStart[id]; }
+    public int getCallee(final int id, final int i){ return callees[calleeStart[id] + i]; }
+
+    public int callerCount(final int id){ return callerStart[id + 1] - callerStart[id]; }
+    public int getCaller(final int id, final int i){ return callers[callerStart[id] + i]; }
+
+    /*Dotted name in the same style as the -c report, plus the descriptor*/
+    public String getDisplayName(final int id)
+    {
+        return (owners[id] + "." + names[id]).replace("/", ".") + descriptors[id];
+    }
+
+    /*Bytes held by the CSR arrays themselves*/
+    public long getEdgeBytes()
+    {
+        return 4L * (calleeStart.length + callees.length + callerStart.length + callers.length);
+    }
+
+    private static String key(final String owner, final String name, final String descriptor)
+    {
+        return owner + "." + name + descriptor;
+    }
+
+
+    /*Accumulates ids and edges before they are packed*/
+    private static final class Builder
+    {
+        private final List<String> owners = new ArrayList<String>();
+        private final List<String> names = new ArrayList<String>();
+        private final List<String> descriptors = new ArrayList<String>();
+        private final List<ClassFile> classes = new ArrayList<ClassFile>();
+        private final List<MethodInfo> methods = new ArrayList<MethodInfo>();
+        private final Map<String, Integer> ids = new HashMap<String, Integer>();
+        private final IntList sources = new IntList(1024);
+        private final IntList targets = new IntList(1024);
+
+        private int idOf(final String owner, final String name, final String descriptor)
+        {
+            final String key = key(owner, name, descriptor);
+            Integer id = ids.get(key);
+
+            if(id == null)
+            {
+                id = owners.size();
+                ids.put(key, id);
+                owners.add(owner);
+                names.add(name);
+                descriptors.add(descriptor);
+            }
+            return id;
+        }
+
+        /*Walk up the parsed superclasses to the one declaring the method*/
+        private String resolveOwner(final Map<String, ClassFile> byName, final String owner,
+            final String name, final String descriptor)
+        {
+            ClassFile cf = byName.get(owner);
+
+            while(cf != null)
+            {
+                if(ids.containsKey(key(cf.getName(), name, descriptor)) &&
+                    cf.findMethod(name, descriptor) != null)
+                {
+                    return cf.getName();
+                }
+                cf = byName.get(cf.getSuperName());
+            }
+
+            return owner;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+import java.util.*;
+
+/**
+ * A single virtual or interface call site and the classes it could reach,
+ * as found by CallTargetResolver.
+ *
+ * @author Luke Mercuri
+ */
+class CallSite
+{
+    private final String caller;
+    private final int offset;
+    private final String callee;
+    private final List<String> targets;
+
+    public CallSite(final String caller, final int offset, final String callee, final List<String> targets)
+    {
+        this.caller = caller;
+        this.offset = offset;
+        this.callee = callee;
+        this.targets = targets;
+    }
+
+    public String getCaller(){ return caller; }
+    public int getOffset(){ return offset; }
+    public String getCallee(){ return callee; }
+    public List<String> getTargets(){ return targets; }
+}
@@ -0,0 +1,183 @@
+import java.util.*;
+
+/**
+ * Class hierarchy analysis for virtual and interface calls. Given the class
+ * named by a call and the method's name and descriptor, works out every
+ * class whose code could actually run: for each concrete class at or below
+ * the named one (found through the children set up by resolveChildren), the
+ * nearest implementation up its superclass chain, or else the default
+ * method it inherits from an interface. If that chain leaves the parsed
+ * classes, the first unparsed superclass is counted as the target.
+ *
+ * Results are cached per (class, name, descriptor) since the same method is
+ * usually called from many sites.
+ *
+ * @author Luke Mercuri
+ */
+public class CallTargetResolver
+{
+    private final Map<String, ClassFile> byName = new HashMap<String, ClassFile>();
+    private final Map<String, List<String>> cache = new HashMap<String, List<String>>();
+
+    public CallTargetResolver(final ClassFile[] classes)
+    {
+        for(ClassFile cf: classes){
+            byName.put(cf.getName(), cf);
+        }
+    }
+
+    /*
+    Names of the classes providing the code that could run for a call
+    to owner.name(descriptor), or null if owner wasn't parsed
+    */
+    public List<String> resolve(final String owner, final String name, final String descriptor)
+    {
+        final String key = owner + "." + name + descriptor;
+
+        if(cache.containsKey(key))
+        {
+            return cache.get(key);
+        }
+
+        List<String> targets = null;
+        final ClassFile cf = byName.get(owner);
+
+        if(cf != null)
+        {
+            final Set<String> found = new LinkedHashSet<String>();
+            final Set<ClassFile> visited = 
+                Collections.newSetFromMap(new IdentityHashMap<ClassFile, Boolean>());
+            final Deque<ClassFile> pending = new ArrayDeque<ClassFile>();
+            pending.push(cf);
+
+            while(!pending.isEmpty())
+            {
+                final ClassFile receiver = pending.pop();
+                if(!visited.add(receiver))
+                {
+                    continue;
+                }
+
+                //only concrete classes can be the type of a receiver
+                if(!receiver.isInterface() && !receiver.checkAccess(Flag.ACC_ABSTRACT))
+                {
+                    final String implementation = findImplementation(receiver, name, descriptor);
+                    if(implementation != null)
+                    {
+                        found.add(implementation);
+                    }
+                }
+
+                for(int i = 0; i < receiver.childCount(); i++){
+                    pending.push(receiver.getChildClass(i));
+                }
+            }
+
+            //an interface default method, with nothing concrete below it
+            if(found.isEmpty() && cf.findOverride(name, descriptor) != null)
+            {
+                found.add(cf.getName());
+            }
+
+            targets = new ArrayList<String>(found);
+        }
+
+        cache.put(key, targets);
+        return targets;
+    }
+
+    /*
+    Nearest class up the superclass chain with code for the method, 
+    failing that the one maximally specific default method among the 
+    superinterfaces (JVMS 5.4.3.3). A chain leaving the parsed classes 
+    anywhere but java/lang/Object could be inherited from the unparsed 
+    class, so that is counted instead; defaults can't override Object's 
+    public methods, so they are safe to prefer over it
+    */
+    private String findImplementation(final ClassFile receiver, final String name, final String descriptor)
+    {
+        final List<ClassFile> chain = new ArrayList<ClassFile>();
+        ClassFile cf = receiver;
+        String className = receiver.getName();
+
+        while(cf != null)
+        {
+            if(cf.findOverride(name, descriptor) != null)
+            {
+                return className;
+            }
+
+            chain.add(cf);
+            className = cf.getSuperName();
+            cf = byName.get(className);
+        }
+
+        if(className == null || "java/lang/Object".equals(className))
+        {
+            final String defaultMethod = findDefault(chain, name, descriptor);
+            if(defaultMethod != null)
+            {
+                return defaultMethod;
+            }
+        }
+
+        //left the parsed classes, so it must be inherited from className
+        return className;
+    }
+
+    /*
+    The parsed superinterface whose default method a class with the 
+    given superclass chain would inherit, or null if there isn't 
+    exactly one. Abstract redeclarations count when picking the 
+    maximally specific interfaces, as they re-abstract anything above
+    */
+    private String findDefault(final List<ClassFile> chain, final String name, final String descriptor)
+    {
+        final Set<String> superinterfaces = new LinkedHashSet<String>();
+        for(ClassFile cf: chain){
+            for(String ancestor: cf.findAncestors(byName)){
+                if(byName.get(ancestor).isInterface()){
+                    superinterfaces.add(ancestor);
+                }
+            }
+        }
+
+        //interfaces declaring the method, and the ancestors of each
+        final Map<String, Set<String>> declaring = new LinkedHashMap<String, Set<String>>();
+        for(String iface: superinterfaces){
+            final ClassFile cf = byName.get(iface);
+            final MethodInfo method = cf.findMethod(name, descriptor);
+            if(method != null && !method.checkAccess(Flag.ACC_STATIC) && 
+                !method.checkAccess(Flag.ACC_PRIVATE))
+            {
+                declaring.put(iface, cf.findAncestors(byName));
+            }
+        }
+
+        String found = null;
+        for(String iface: declaring.keySet()){
+            boolean maximal = true;
+            for(Map.Entry<String, Set<String>> other: declaring.entrySet()){
+                if(other.getValue().contains(iface)){
+                    maximal = false;
+                    break;
+                }
+            }
+
+            if(maximal && !byName.get(iface).findMethod(name, descriptor).checkAccess(Flag.ACC_ABSTRACT))
+            {
+                //more than one is ambiguous, the call would fail at run time
+                if(found != null)
+                {
+                    return null;
+                }
+                found = iface;
+            }
+        }
+
+        return found;
+    }
+
+    /*Number of distinct (class, name, descriptor) resolutions performed*/
+    public int cacheSize(){ return cache.size(); }
+}
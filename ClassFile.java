@@ -1,4 +1,5 @@
 import java.io.*;
+import java.nio.*;
 import java.util.*;
 
 /**
@@ -25,6 +26,8 @@ public class ClassFile
     private final FieldInfo fields[];
     private final MethodInfo methods[];
     private final AttributeInfo attributes[];
+    /*True if parsing stopped after the interfaces*/
+    private final boolean headerOnly;
     private final List<ClassFile> children = new ArrayList<ClassFile>();
     /*End Luke fields*/
 
@@ -37,66 +40,194 @@ public class ClassFile
     public ClassFile(final String filename) throws ClassFileParserException,
                                              IOException
     {
-        /*Dave's existing code*/
-        final DataInputStream dis =
-            new DataInputStream(new FileInputStream(filename));
+        this(ClassSource.of(filename));
+    }
 
-        this.filename = filename;
-        magic = (long)dis.readUnsignedShort() << 16 | dis.readUnsignedShort();
-        minorVersion = dis.readUnsignedShort();
-        majorVersion = dis.readUnsignedShort();
-        constantPool = new ConstantPool(dis);
-        /*End Dave code*/
+    /*Parse a class already in memory (from an agent or generated
+    code, say).  The filename is optional and only used for display*/
+    public ClassFile(final byte[] bytes, final String filename) throws ClassFileParserException,
+                                                                 IOException
+    {
+        this(ClassSource.of(ByteBuffer.wrap(bytes), filename));
+    }
+
+    /*Parse the bytes between the buffer's position and limit, which are
+    read in place and left unchanged (so read-only buffers are fine)*/
+    public ClassFile(final ByteBuffer buffer, final String filename) throws ClassFileParserException,
+                                                                      IOException
+    {
+        this(ClassSource.of(buffer, filename));
+    }
+
+    /*Parse a class from a stream, which is read exactly up to the end of
+    the class and not closed, so several classes can be read from one
+    stream in turn.  Nothing is buffered, so a stream that is slow to
+    read a byte at a time (a FileInputStream, say) should be wrapped in
+    a BufferedInputStream first, and kept for the classes after it*/
+    public ClassFile(final InputStream in, final String filename) throws ClassFileParserException,
+                                                                   IOException
+    {
+        this(ClassSource.of(in, filename));
+    }
+
+    private ClassFile(final ClassSource source) throws ClassFileParserException,
+                                                 IOException
+    {
+        this(source, false, null);
+    }
+
+    /*
+    Parse a class file, stopping after the interfaces if only the header is
+    wanted or the class doesn't pass the filter.  Returns null for classes
+    the filter (which may be null) rejects, whose members are never read
+    */
+    public static ClassFile read(final String filename, final boolean headerOnly, 
+        final ClassNameFilter filter) throws ClassFileParserException, IOException
+    {
+        final ClassFile cf = new ClassFile(ClassSource.of(filename), headerOnly, filter);
+        return (filter == null || filter.matches(cf.getName())) ? cf : null;
+    }
+
+    private ClassFile(final ClassSource source, final boolean headerOnly, 
+        final ClassNameFilter filter) throws ClassFileParserException, IOException
+    {
+        final ClassParseEvent event = new ClassParseEvent();
+        event.begin();
+
+        /*Committed whether or not the parse succeeds, since a class that
+        fails part way through is the one most worth finding in a recording*/
+        try
+        {
+            /*Dave's existing code*/
+            final DataInputStream dis = new DataInputStream(source);
+
+            ParseStats.begin(ParseStats.Phase.CONSTANT_POOL);
+            this.filename = source.getFilename();
+            magic = (long)dis.readUnsignedShort() << 16 | dis.readUnsignedShort();
+            minorVersion = dis.readUnsignedShort();
+            majorVersion = dis.readUnsignedShort();
+            constantPool = new ConstantPool(dis);
+            /*End Dave code*/
+            ParseStats.end();
+
+            ParseStats.begin(ParseStats.Phase.MEMBERS);
 
 
-        /*
-        Read in access flags for class
-        eg: is it public? is it an interface? etc.
-        */
-        accessFlags = new AccessFlags(dis.readUnsignedShort());
+            /*
+            Read in access flags for class
+            eg: is it public? is it an interface? etc.
+            */
+            accessFlags = new AccessFlags(dis.readUnsignedShort());
 
-        /*Name of current class*/
-        thisClass = (ConstantClass)constantPool.getEntry(dis.readUnsignedShort());
+            /*Name of current class*/
+            thisClass = (ConstantClass)constantPool.getEntry(dis.readUnsignedShort());
         
-        /*
-        Name of class extended by this class
-        All classes which do not specify a superclass
-        implicitly extend Object
-        */
-        superClass = (ConstantClass)constantPool.getEntry(dis.readUnsignedShort());
+            /*
+            Name of class extended by this class
+            All classes which do not specify a superclass
+            implicitly extend Object (only Object itself has none)
+            */
+            final int superIndex = dis.readUnsignedShort();
+            superClass = (superIndex == 0) ? null : 
+                (ConstantClass)constantPool.getEntry(superIndex);
         
-        /*
-        List of 0..* interfaces implimented by this class
-        */
-        interfaces = new ConstantClass[dis.readUnsignedShort()];
+            /*
+            List of 0..* interfaces implimented by this class
+            */
+            interfaces = new ConstantClass[dis.readUnsignedShort()];
+
+            //Each interface is a reference to an entry in the Constant Pool
+            for(int i = 0; i < interfaces.length; i++)
+            {
+                interfaces[i] = (ConstantClass)constantPool.getEntry(dis.readUnsignedShort());
+            }
+
+            /*The rest of the file is left unread*/
+            this.headerOnly = headerOnly || (filter != null && !filter.matches(getName()));
+            if(this.headerOnly)
+            {
+                fields = new FieldInfo[0];
+                methods = new MethodInfo[0];
+                attributes = new AttributeInfo[0];
+            }
+            else
+            {
+                /*Read in number of fields contained by Class*/
+                fields = new FieldInfo[dis.readUnsignedShort()];
+                for(int i = 0; i < fields.length; i++)
+                {
+                    fields[i] = new FieldInfo(dis, constantPool);
+                }
+            
+                /*Read in number of methods contained by Class*/
+                methods = new MethodInfo[dis.readUnsignedShort()];
+
+                 for(int i = 0; i < methods.length; i++){
+                    methods[i] = new MethodInfo(dis, constantPool);
+                 }
+            
+                /*Read in attributes of Class (such as filename)*/
+                attributes = new AttributeInfo[dis.readUnsignedShort()];
+
+                 for(int i = 0; i < attributes.length; i++){
+                    attributes[i] = AttributeInfo.parse(dis, constantPool);
+                 }
+            }
+            ParseStats.end();
 
-        //Each interface is a reference to an entry in the Constant Pool
-        for(int i = 0; i < interfaces.length; i++)
+            ParseStats.classParsed(getDisplayName(), source.getCount(), 
+                System.nanoTime() - source.getStart());
+
+            event.constantPoolCount = constantPool.size();
+            event.methodCount = methods.length;
+        }
+        catch(Exception e)
         {
-            interfaces[i] = (ConstantClass)constantPool.getEntry(dis.readUnsignedShort());
+            event.failure = e.toString();
+            throw e;
         }
-
-        /*Read in number of fields contained by Class*/
-        fields = new FieldInfo[dis.readUnsignedShort()];
-        for(int i = 0; i < fields.length; i++)
+        finally
         {
-            fields[i] = new FieldInfo(dis, constantPool);
+            event.end();
+            if(event.shouldCommit())
+            {
+                event.fileName = (event.failure == null) ? getDisplayName() : source.getFilename();
+                event.size = source.getCount();
+                event.commit();
+            }
         }
-        
-        /*Read in number of methods contained by Class*/
-        methods = new MethodInfo[dis.readUnsignedShort()];
+    }
 
-         for(int i = 0; i < methods.length; i++){
-            methods[i] = new MethodInfo(dis, constantPool);
-         }
-        
-        /*Read in attributes of Class (such as filename)*/
-        attributes = new AttributeInfo[dis.readUnsignedShort()];
+    /*Shares everything parsed with the original, which is never changed
+    after parsing, but starts with no children of its own*/
+    private ClassFile(final ClassFile original, final String filename)
+    {
+        this.filename = filename;
+        magic = original.magic;
+        minorVersion = original.minorVersion;
+        majorVersion = original.majorVersion;
+        constantPool = original.constantPool;
+        accessFlags = original.accessFlags;
+        thisClass = original.thisClass;
+        superClass = original.superClass;
+        interfaces = original.interfaces;
+        fields = original.fields;
+        methods = original.methods;
+        attributes = original.attributes;
+        headerOnly = original.headerOnly;
+    }
 
-         for(int i = 0; i < attributes.length; i++){
-            attributes[i] = AttributeInfo.parse(dis, constantPool);
-         }
-        
+    /*A copy whose hierarchy can be resolved without touching this one's
+    (used by ClassFileCache, so callers sharing a class can't clash),
+    under the filename it was asked for by, as the same bytes may have
+    been cached under another one first*/
+    ClassFile copyWithoutHierarchy(final String filename){
+        return new ClassFile(this, filename);
+    }
+
+    /*True if no fields, methods or attributes were read*/
+    public boolean isHeaderOnly(){
+        return headerOnly;
     }
 
     /*Vanilla Accessors*/
@@ -104,10 +235,74 @@ public class ClassFile
         return thisClass.getName();
     }
 
+    /*File the class was read from, or null if it came from memory*/
+    public String getFilename(){
+        return filename;
+    }
+
+    /*The filename if there is one, otherwise the class name*/
+    public String getDisplayName(){
+        return (filename != null) ? filename : getName().replace("/", ".");
+    }
+
+    /*Package in dotted form, for per package totals*/
+    public String getPackageName(){
+        final String name = getName();
+        final int slash = name.lastIndexOf('/');
+        return (slash == -1) ? "<default package>" : name.substring(0, slash).replace("/", ".");
+    }
+
+    /*Name of the superclass, or null if there isn't one (java/lang/Object)*/
+    public String getSuperName(){
+        return superClass == null ? null : superClass.getName();
+    }
+
+    public String getInterfaceName(final int index){
+        return interfaces[index].getName();
+    }
+
+    public int interfaceCount(){
+        return interfaces.length;
+    }
+
     public MethodInfo getMethod(final int index){
         return methods[index];
     }
 
+    public AttributeInfo getAttribute(final int index){
+        return attributes[index];
+    }
+
+    public int attributeCount(){
+        return attributes.length;
+    }
+
+    public ConstantPool getConstantPool(){
+        return constantPool;
+    }
+
+    public FieldInfo getField(final int index){
+        return fields[index];
+    }
+
+    public int fieldCount(){
+        return fields.length;
+    }
+
+    /*Find a method declared in this class by name and descriptor, or null*/
+    public MethodInfo findMethod(final String name, final String descriptor){
+        MethodInfo found = null;
+
+        for(MethodInfo method: methods){
+            if(method.getName().equals(name) && method.getDescriptor().equals(descriptor)){
+                found = method;
+                break;
+            }
+        }
+
+        return found;
+    }
+
     public int methodCount(){
         return methods.length;
     }
@@ -131,6 +326,23 @@ public class ClassFile
 
     }
 
+    /*Get a FieldRef form a given entry into the Constant Pool*/
+    public ConstantRef getFieldRefFromCPIndex(final int index) throws InvalidConstantPoolIndex{
+        return (ConstantRef)getCPEntry(index);
+    }
+
+    /*The bootstrap method an invokedynamic entry refers to*/
+    public BootstrapMethod getBootstrapMethod(final ConstantInvokeDynamic indy) 
+        throws InvalidConstantPoolIndex{
+        for(AttributeInfo attribute: attributes){
+            if(attribute instanceof BootstrapMethodsAttribute){
+                return ((BootstrapMethodsAttribute)attribute).getMethod(indy.getBootstrapMethodIndex());
+            }
+        }
+        throw new InvalidConstantPoolIndex(String.format(
+            "No BootstrapMethods attribute for bootstrap method %d", indy.getBootstrapMethodIndex()));
+    }
+
     /*Used for retreiving the name of 
     a method given a Constant Pool index*/
     public String getFullMethodNameFromRef(final ConstantRef ref)throws InvalidConstantPoolIndex{
@@ -165,6 +377,78 @@ public class ClassFile
         }
     }
 
+    /*Same result as calling resolveChildren() on every class, but
+    looks parents up by name instead of comparing every pair of
+    classes, so it scales with the number of classes.  Any children
+    from an earlier resolution (of a cached class, say) are replaced*/
+    public static void resolveHierarchy(final ClassFile[] classes){
+        final Map<String, List<ClassFile>> byName = new HashMap<String, List<ClassFile>>();
+
+        for(ClassFile cf: classes){
+            cf.children.clear();
+            List<ClassFile> sameName = byName.get(cf.getName());
+            if(sameName == null){
+                sameName = new ArrayList<ClassFile>(1);
+                byName.put(cf.getName(), sameName);
+            }
+            sameName.add(cf);
+        }
+
+        //visiting in order keeps each children list in the same order
+        for(ClassFile cf: classes){
+            final Set<ClassFile> parents = 
+                Collections.newSetFromMap(new IdentityHashMap<ClassFile, Boolean>());
+
+            if(cf.superClass != null && byName.containsKey(cf.getSuperName())){
+                parents.addAll(byName.get(cf.getSuperName()));
+            }
+            for(ConstantClass iface: cf.interfaces){
+                if(byName.containsKey(iface.getName())){
+                    for(ClassFile parent: byName.get(iface.getName())){
+                        if(parent.isInterface()){
+                            parents.add(parent);
+                        }
+                    }
+                }
+            }
+
+            for(ClassFile parent: parents){
+                if(parent != cf){
+                    parent.children.add(cf);
+                }
+            }
+        }
+    }
+
+    /*Every parsed superclass and superinterface of this class,
+    looked up by name among the given classes*/
+    public Set<String> findAncestors(final Map<String, ClassFile> byName){
+        final Set<String> ancestors = new LinkedHashSet<String>();
+        final Deque<ClassFile> pending = new ArrayDeque<ClassFile>();
+        pending.push(this);
+
+        while(!pending.isEmpty())
+        {
+            final ClassFile current = pending.pop();
+            final List<String> parents = new ArrayList<String>();
+            if(current.getSuperName() != null){
+                parents.add(current.getSuperName());
+            }
+            for(int i = 0; i < current.interfaceCount(); i++){
+                parents.add(current.getInterfaceName(i));
+            }
+
+            for(String parent: parents){
+                final ClassFile parentClass = byName.get(parent);
+                if(parentClass != null && parentClass != this && ancestors.add(parent)){
+                    pending.push(parentClass);
+                }
+            }
+        }
+
+        return ancestors;
+    }
+
     /*Given a method, recursively query all children
     to see which classes override the method*/
     public List<ClassFile> findOverridesForMethod(final MethodInfo method){
@@ -183,12 +467,23 @@ public class ClassFile
     Given a method within a parent class,
     check whether this class overrides it*/
     public final boolean doesOverrideMethod(final MethodInfo parentMethod){
+        return findOverride(parentMethod) != null;
+    }
+
+    /*The method in this class overriding the given parent
+    method, or null if this class doesn't override it*/
+    public final MethodInfo findOverride(final MethodInfo parentMethod){
+        return findOverride(parentMethod.getName(), parentMethod.getDescriptor());
+    }
+
+    /*As above, given just the name and descriptor of the parent method*/
+    public final MethodInfo findOverride(final String parentName, final String parentDescriptor){
 
         for(MethodInfo method: methods){
 
             
             String methodDescriptor = method.getDescriptor();
-            String parentMethodDescriptor = parentMethod.getDescriptor();
+            String parentMethodDescriptor = parentDescriptor;
 
             //Ignore everything after '(' to support different return types
             methodDescriptor = methodDescriptor.substring(
@@ -199,13 +494,13 @@ public class ClassFile
             //lazy string compare is best compare
             if((method.getCodeSize() != 0) &&
                 (methodDescriptor.equals(parentMethodDescriptor)) && 
-                (method.getName().equals(parentMethod.getName())))
+                (method.getName().equals(parentName)))
             {
-                return true;
+                return method;
             }
         }
 
-        return false;
+        return null;
     }
 
     //Check if you impliment a given interface
@@ -224,19 +519,65 @@ public class ClassFile
 
     //check if you extend a given class
     public boolean isChildOf(final ConstantClass parentClass){
-        return parentClass.getName().equals(superClass.getName());
+        return superClass != null && parentClass.getName().equals(superClass.getName());
     }
 
     public boolean isInterface(){
         return accessFlags.checkAccess(Flag.ACC_INTERFACE);
     }
 
+    /*Whether the class itself carries an annotation of the given type*/
+    public boolean hasAnnotation(final String type){
+        for(AttributeInfo attribute: attributes){
+            if(attribute instanceof AnnotationsAttribute && 
+                ((AnnotationsAttribute)attribute).hasType(type)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getAccessMask(){
+        return accessFlags.getMask();
+    }
+
+    /*Poll whether this class has a particular access flag set*/
+    public boolean checkAccess(final Flag flag){
+        return accessFlags.checkAccess(flag);
+    }
+
+
 
 
 
 
 
 
+    /*Add an estimate of everything this class keeps alive*/
+    public void addFootprint(final Footprint fp)
+    {
+        fp.addObject(Footprint.Category.STRUCTURE, this);
+        fp.addString(Footprint.Category.STRINGS, filename);
+        constantPool.addFootprint(fp);
+        accessFlags.addFootprint(fp);
+        fp.addArray(Footprint.Category.STRUCTURE, interfaces);
+        fp.addArray(Footprint.Category.STRUCTURE, fields);
+        fp.addArray(Footprint.Category.STRUCTURE, methods);
+        fp.addArray(Footprint.Category.STRUCTURE, attributes);
+        fp.addList(Footprint.Category.STRUCTURE, children);
+
+        for(FieldInfo field: fields){
+            field.addFootprint(fp);
+        }
+        for(MethodInfo method: methods){
+            method.addFootprint(fp);
+        }
+        for(AttributeInfo attribute: attributes){
+            attribute.addFootprint(fp);
+        }
+    }
+
+
 
     /** Returns the contents of the class file as a formatted String. 
     Super gross, I used this for debugging but the 
@@ -255,7 +596,7 @@ public class ClassFile
             constantPool.toString(tabs+1), 
             accessFlags.toString(tabs+1), 
             thisClass.toString(0), 
-            superClass.toString(0)));
+            superClass == null ? "" : superClass.toString(0)));
 
             if(interfaces.length > 0)
             {
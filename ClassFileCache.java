@@ -0,0 +1,227 @@
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.security.*;
+import java.util.*;
+
+/**
+ * A cache of parsed ClassFiles for code that embeds the parser and keeps
+ * asking about the same classes. Files are keyed by path and checked
+ * against the file's size and modification time, so a rebuilt class is
+ * parsed again rather than served stale. Classes already in memory are
+ * keyed by a SHA-256 hash of their contents.
+ *
+ * The cache is bounded by the estimated heap each ClassFile retains (see
+ * Footprint) rather than by the number of entries, and evicts the least
+ * recently used classes once over its limit. Lookups may come from any
+ * number of threads: the map is only locked to look up and insert, and
+ * parsing happens outside the lock, so two threads missing on the same
+ * class at once may both parse it, with the first result kept.
+ *
+ * The parsed classes themselves are never handed out. Each lookup returns
+ * a copy sharing everything parsed (which nothing changes afterwards) but
+ * with a hierarchy of its own, so callers resolving different sets of
+ * classes with resolveHierarchy() can't overwrite or race on each other's
+ * children. The copy carries the filename that lookup asked for, since
+ * identical bytes may first have been cached under another name. The
+ * copies are small and aren't counted against the limit.
+ *
+ * @author Luke Mercuri
+ */
+public class ClassFileCache
+{
+    private final long maxBytes;
+    private long bytes = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /*Access ordered, so iteration starts at the least recently used*/
+    private final LinkedHashMap<String, Entry> entries =
+        new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+    public ClassFileCache(final long maxBytes)
+    {
+        if(maxBytes <= 0)
+        {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /*The parsed class at the given path, parsing it if it isn't cached or has changed*/
+    public ClassFile get(final String filename) throws ClassFileParserException, IOException
+    {
+        final Path path = Paths.get(filename).toAbsolutePath().normalize();
+        final BasicFileAttributes attributes = 
+            Files.readAttributes(path, BasicFileAttributes.class);
+        final String key = path.toString();
+
+        synchronized(this)
+        {
+            final Entry entry = entries.get(key);
+            if(entry != null && entry.matches(attributes))
+            {
+                hits++;
+                return entry.classFile.copyWithoutHierarchy(filename);
+            }
+            misses++;
+        }
+
+        final ClassFile cf = new ClassFile(filename);
+        final Entry entry = new Entry(cf, attributes, Footprint.of(cf).total());
+
+        synchronized(this)
+        {
+            final Entry existing = entries.get(key);
+            if(existing != null && existing.matches(attributes))
+            {
+                //another thread got there first
+                return existing.classFile.copyWithoutHierarchy(filename);
+            }
+
+            if(existing != null)
+            {
+                bytes -= existing.bytes;
+            }
+            entries.put(key, entry);
+            bytes += entry.bytes;
+            evict();
+        }
+
+        return cf.copyWithoutHierarchy(filename);
+    }
+
+    /*The parsed class with these contents, parsing it if it isn't cached*/
+    public ClassFile get(final byte[] contents, final String filename) throws ClassFileParserException,
+                                                                     IOException
+    {
+        final String key = hash(contents);
+
+        synchronized(this)
+        {
+            final Entry entry = entries.get(key);
+            if(entry != null)
+            {
+                hits++;
+                return entry.classFile.copyWithoutHierarchy(filename);
+            }
+            misses++;
+        }
+
+        final ClassFile cf = new ClassFile(contents, filename);
+        final Entry entry = new Entry(cf, null, Footprint.of(cf).total());
+
+        synchronized(this)
+        {
+            final Entry existing = entries.get(key);
+            if(existing != null)
+            {
+                return existing.classFile.copyWithoutHierarchy(filename);
+            }
+
+            entries.put(key, entry);
+            bytes += entry.bytes;
+            evict();
+        }
+
+        return cf.copyWithoutHierarchy(filename);
+    }
+
+    /*Content keys can't clash with paths, which never start with '#'*/
+    private static String hash(final byte[] contents)
+    {
+        try
+        {
+            final StringBuilder s = new StringBuilder("#");
+            for(byte b: MessageDigest.getInstance("SHA-256").digest(contents)){
+                s.append(String.format("%02x", b));
+            }
+            return s.toString();
+        }
+        catch(NoSuchAlgorithmException e)
+        {
+            //every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /*Drop a single path, if cached*/
+    public synchronized void invalidate(final String filename)
+    {
+        final Entry entry = entries.remove(
+            Paths.get(filename).toAbsolutePath().normalize().toString());
+        if(entry != null)
+        {
+            bytes -= entry.bytes;
+        }
+    }
+
+    public synchronized void clear()
+    {
+        entries.clear();
+        bytes = 0;
+    }
+
+    /*Remove least recently used entries until under the limit.  The
+    newest entry is always kept, even if it is bigger than the limit*/
+    private void evict()
+    {
+        final Iterator<Entry> it = entries.values().iterator();
+
+        while(bytes > maxBytes && entries.size() > 1)
+        {
+            final Entry oldest = it.next();
+            it.remove();
+            bytes -= oldest.bytes;
+            evictions++;
+        }
+    }
+
+
+    public long getMaxBytes(){ return maxBytes; }
+
+    public synchronized long getBytes(){ return bytes; }
+    public synchronized int size(){ return entries.size(); }
+
+    public synchronized long getHits(){ return hits; }
+    public synchronized long getMisses(){ return misses; }
+    public synchronized long getEvictions(){ return evictions; }
+
+    public synchronized double getHitRate()
+    {
+        return (hits + misses == 0) ? 0 : hits / (double)(hits + misses);
+    }
+
+    public synchronized String toString()
+    {
+        return String.format("%d classes, %d of %d bytes, %d hits, %d misses (%.1f%% hit rate), %d evictions",
+            entries.size(), bytes, maxBytes, hits, misses, getHitRate() * 100, evictions);
+    }
+
+
+    /*A parsed class and what its file looked like when parsed*/
+    private static final class Entry
+    {
+        private final ClassFile classFile;
+        private final long size;
+        private final FileTime modified;
+        private final long bytes;
+
+        /*attributes is null for classes keyed by content*/
+        private Entry(final ClassFile classFile, final BasicFileAttributes attributes, final long bytes)
+        {
+            this.classFile = classFile;
+            this.size = (attributes == null) ? -1 : attributes.size();
+            this.modified = (attributes == null) ? null : attributes.lastModifiedTime();
+            this.bytes = bytes;
+        }
+
+        private boolean matches(final BasicFileAttributes attributes)
+        {
+            return modified != null && size == attributes.size() && 
+                modified.equals(attributes.lastModifiedTime());
+        }
+    }
+}
@@ -0,0 +1,312 @@
+import java.util.*;
+
+/**
+ * Works out what running each class's static initialiser costs, counting
+ * not just its own <clinit> but every class initialisation it sets off.
+ * A class is initialised the first time something creates an instance of
+ * it or touches one of its static fields or methods, and its superclass is
+ * initialised before it, so those are the edges followed here.
+ *
+ * Cost is measured as bytecode length of the <clinit> methods involved,
+ * which is only a stand-in for time, but cascades that pull in dozens of
+ * classes stand out clearly. Classes that weren't parsed end the walk and
+ * are counted separately, as their cost can't be seen.
+ *
+ * @author Luke Mercuri
+ */
+public class ClassInit
+{
+    private final ClassFile classes[];
+    private final Map<String, Integer> ids = new HashMap<String, Integer>();
+
+    /*Own <clinit> code length (0 if it has none) and the calls it makes*/
+    private final int ownCost[];
+    private final String calls[][];
+
+    /*CSR list of the parsed classes each class triggers directly*/
+    private final int triggerStart[];
+    private final int triggers[];
+    /*Triggered classes that weren't parsed*/
+    private final List<Set<String>> external = new ArrayList<Set<String>>();
+
+    /*Filled in by the transitive walk*/
+    private final long cascadeCost[];
+    private final int cascadeClasses[];
+    private final int cascadeExternal[];
+
+    public ClassInit(final ClassFile[] parsed)
+    {
+        /*a class given twice keeps its first copy*/
+        final List<ClassFile> unique = new ArrayList<ClassFile>();
+        for(ClassFile cf: parsed){
+            if(!ids.containsKey(cf.getName())){
+                ids.put(cf.getName(), unique.size());
+                unique.add(cf);
+            }
+        }
+        classes = unique.toArray(new ClassFile[unique.size()]);
+
+        ownCost = new int[classes.length];
+        calls = new String[classes.length][];
+
+        final IntList from = new IntList();
+        final IntList to = new IntList();
+
+        for(int id = 0; id < classes.length; id++){
+            final ClassFile cf = classes[id];
+            final Set<String> triggered = new LinkedHashSet<String>();
+
+            if(cf.getSuperName() != null && !cf.isInterface()){
+                triggered.add(cf.getSuperName());
+            }
+
+            final MethodInfo clinit = cf.findMethod("<clinit>", "()V");
+            final CodeAttribute code = (clinit == null) ? null : clinit.getCode();
+            calls[id] = new String[0];
+            if(code != null){
+                ownCost[id] = code.getLength();
+                try{
+                    calls[id] = code.getMethodCalls(cf);
+                    triggered.addAll(code.findInitTriggers(cf));
+                }
+                catch(InvalidConstantPoolIndex e){
+                    System.out.println(e.getMessage());
+                }
+            }
+            triggered.remove(cf.getName());
+
+            final Set<String> unparsed = new TreeSet<String>();
+            for(String name: triggered){
+                final Integer target = ids.get(name);
+                if(target == null){
+                    unparsed.add(name);
+                } else {
+                    from.add(id);
+                    to.add(target);
+                }
+            }
+            external.add(unparsed);
+        }
+
+        triggerStart = new int[classes.length + 1];
+        triggers = new int[from.size()];
+        CallGraph.fillRows(from.toArray(), to.toArray(), triggerStart, triggers);
+
+        cascadeCost = new long[classes.length];
+        cascadeClasses = new int[classes.length];
+        cascadeExternal = new int[classes.length];
+        walkCascades();
+    }
+
+    /*
+    Cascades are worked out once per strongly connected component of
+    the trigger graph, as cycles are common (a class and its nested
+    classes often refer to each other) and every class in a cycle
+    sets off the same cascade.  Only classes with a <clinit> and what
+    they set off are walked.  Tarjan's algorithm finishes components
+    successors first, so each one's reachable set is its own plus
+    those already found for its successors.  Sets are dropped once
+    every predecessor has used them, so what's held at a time stays
+    near the width of the graph rather than its size
+    */
+    private void walkCascades()
+    {
+        final int numClasses = classes.length;
+        final int component[] = new int[numClasses];
+        final IntList members = new IntList();
+        final IntList componentStart = new IntList();
+        componentStart.add(0);
+        findComponents(component, members, componentStart);
+        final int numComponents = componentStart.size() - 1;
+
+        //distinct successor components of each component, and predecessor counts
+        final int stamp[] = new int[Math.max(numComponents, 1)];
+        final IntList from = new IntList();
+        final IntList to = new IntList();
+        final int pending[] = new int[numComponents];
+        final long ownTotal[] = new long[numComponents];
+
+        for(int c = 0; c < numComponents; c++){
+            stamp[c] = c + 1;
+            for(int m = componentStart.get(c); m < componentStart.get(c + 1); m++){
+                final int id = members.get(m);
+                ownTotal[c] += ownCost[id];
+                for(int t = triggerStart[id]; t < triggerStart[id + 1]; t++){
+                    final int target = component[triggers[t]];
+                    if(stamp[target] != c + 1){
+                        stamp[target] = c + 1;
+                        from.add(c);
+                        to.add(target);
+                        pending[target]++;
+                    }
+                }
+            }
+        }
+        final int successorStart[] = new int[numComponents + 1];
+        final int successors[] = new int[from.size()];
+        CallGraph.fillRows(from.toArray(), to.toArray(), successorStart, successors);
+
+        //unparsed classes as ints, so they can be counted without sets
+        final Map<String, Integer> externalIds = new HashMap<String, Integer>();
+        final int externalOf[][] = new int[numClasses][];
+        for(int id = 0; id < numClasses; id++){
+            externalOf[id] = new int[external.get(id).size()];
+            int i = 0;
+            for(String name: external.get(id)){
+                Integer externalId = externalIds.get(name);
+                if(externalId == null){
+                    externalId = externalIds.size();
+                    externalIds.put(name, externalId);
+                }
+                externalOf[id][i++] = externalId;
+            }
+        }
+
+        Arrays.fill(stamp, 0);
+        final int externalStamp[] = new int[externalIds.size()];
+        final int reach[][] = new int[numComponents][];
+
+        for(int c = 0; c < numComponents; c++){
+            final IntList reached = new IntList();
+            stamp[c] = c + 1;
+            reached.add(c);
+            for(int s = successorStart[c]; s < successorStart[c + 1]; s++){
+                for(int r: reach[successors[s]]){
+                    if(stamp[r] != c + 1){
+                        stamp[r] = c + 1;
+                        reached.add(r);
+                    }
+                }
+            }
+            reach[c] = reached.toArray();
+
+            long cost = 0;
+            int count = 0;
+            int unparsed = 0;
+            for(int r: reach[c]){
+                cost += ownTotal[r];
+                count += componentStart.get(r + 1) - componentStart.get(r);
+                for(int m = componentStart.get(r); m < componentStart.get(r + 1); m++){
+                    for(int externalId: externalOf[members.get(m)]){
+                        if(externalStamp[externalId] != c + 1){
+                            externalStamp[externalId] = c + 1;
+                            unparsed++;
+                        }
+                    }
+                }
+            }
+
+            for(int m = componentStart.get(c); m < componentStart.get(c + 1); m++){
+                final int id = members.get(m);
+                cascadeCost[id] = cost;
+                //the root itself isn't part of its own cascade
+                cascadeClasses[id] = count - 1;
+                cascadeExternal[id] = unparsed;
+            }
+
+            for(int s = successorStart[c]; s < successorStart[c + 1]; s++){
+                if(--pending[successors[s]] == 0){
+                    reach[successors[s]] = null;
+                }
+            }
+            if(pending[c] == 0){
+                reach[c] = null;
+            }
+        }
+    }
+
+    /*
+    Iterative Tarjan over the trigger edges from every class with a
+    <clinit>, numbering components in the order they finish (which
+    is successors first).  Classes not reached get component -1
+    */
+    private void findComponents(final int component[], final IntList members, final IntList componentStart)
+    {
+        final int numClasses = classes.length;
+        final int index[] = new int[numClasses];
+        final int low[] = new int[numClasses];
+        final int next[] = new int[numClasses];
+        final BitSet onStack = new BitSet(numClasses);
+        final IntList stack = new IntList();
+        final IntList path = new IntList();
+        int counter = 0;
+
+        Arrays.fill(index, -1);
+        Arrays.fill(component, -1);
+
+        for(int root = 0; root < numClasses; root++){
+            if(ownCost[root] == 0 || index[root] != -1){
+                continue;
+            }
+
+            index[root] = low[root] = counter++;
+            next[root] = triggerStart[root];
+            stack.add(root);
+            onStack.set(root);
+            path.add(root);
+
+            while(path.size() > 0){
+                final int id = path.get(path.size() - 1);
+
+                if(next[id] < triggerStart[id + 1]){
+                    final int target = triggers[next[id]++];
+                    if(index[target] == -1){
+                        index[target] = low[target] = counter++;
+                        next[target] = triggerStart[target];
+                        stack.add(target);
+                        onStack.set(target);
+                        path.add(target);
+                    } else if(onStack.get(target)){
+                        low[id] = Math.min(low[id], index[target]);
+                    }
+                    continue;
+                }
+
+                path.removeLast();
+                if(path.size() > 0){
+                    final int parent = path.get(path.size() - 1);
+                    low[parent] = Math.min(low[parent], low[id]);
+                }
+
+                if(low[id] == index[id]){
+                    final int c = componentStart.size() - 1;
+                    int member;
+                    do{
+                        member = stack.removeLast();
+                        onStack.clear(member);
+                        component[member] = c;
+                        members.add(member);
+                    } while(member != id);
+                    componentStart.add(members.size());
+                }
+            }
+        }
+    }
+
+
+    public int classCount(){ return classes.length; }
+
+    public ClassFile getClassFile(final int id){ return classes[id]; }
+
+    /*Id of a parsed class, or -1*/
+    public int getId(final String name)
+    {
+        final Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    /*True if the class has a static initialiser of its own*/
+    public boolean hasClinit(final int id){ return ownCost[id] > 0; }
+
+    public int getOwnCost(final int id){ return ownCost[id]; }
+    public String[] getCalls(final int id){ return calls[id]; }
+
+    public long getCascadeCost(final int id){ return cascadeCost[id]; }
+    public int getCascadeClasses(final int id){ return cascadeClasses[id]; }
+    public int getCascadeExternal(final int id){ return cascadeExternal[id]; }
+
+    public int triggerCount(final int id){ return triggerStart[id + 1] - triggerStart[id]; }
+    public ClassFile getTrigger(final int id, final int i){ return classes[triggers[triggerStart[id] + i]]; }
+
+    public Set<String> getExternalTriggers(final int id){ return external.get(id); }
+}
@@ -0,0 +1,142 @@
+import java.util.*;
+
+/**
+ * Estimated field offsets and size of one class's instances, built by
+ * ObjectLayout.
+ *
+ * @author Luke Mercuri
+ */
+class ClassLayout
+{
+    private final ClassFile classFile;
+    private final boolean complete;
+    private final int headerSize;
+    private final List<FieldInfo> fields = new ArrayList<FieldInfo>();
+    private final List<ClassFile> owners = new ArrayList<ClassFile>();
+    private final IntList offsets = new IntList();
+    private final IntList sizes = new IntList();
+
+    /*Alignment gaps left behind that later fields may fill, as (offset, length)*/
+    private final IntList gaps = new IntList();
+    private int end;
+    private int instanceSize;
+
+    /*A class with no parsed superclass*/
+    ClassLayout(final ClassFile classFile, final int headerSize, final boolean complete)
+    {
+        this.classFile = classFile;
+        this.headerSize = headerSize;
+        this.complete = complete;
+        end = headerSize;
+    }
+
+    /*Start from a copy of the superclass's fields*/
+    ClassLayout(final ClassFile classFile, final ClassLayout superLayout)
+    {
+        this.classFile = classFile;
+        this.headerSize = superLayout.headerSize;
+        this.complete = superLayout.complete;
+        for(int i = 0; i < superLayout.fields.size(); i++){
+            fields.add(superLayout.fields.get(i));
+            owners.add(superLayout.owners.get(i));
+            offsets.add(superLayout.offsets.get(i));
+            sizes.add(superLayout.sizes.get(i));
+        }
+        for(int i = 0; i < superLayout.gaps.size(); i++){
+            gaps.add(superLayout.gaps.get(i));
+        }
+        end = superLayout.end;
+    }
+
+    /*Put a field in the first gap it fits in, or at the end*/
+    void place(final FieldInfo field, final int size)
+    {
+        int offset = -1;
+
+        for(int g = 0; g < gaps.size() && offset == -1; g += 2){
+            final int gapStart = gaps.get(g);
+            final int aligned = (gapStart + size - 1) / size * size;
+            if(aligned + size <= gapStart + gaps.get(g + 1)){
+                offset = aligned;
+                rebuildGap(g, gapStart, aligned, size);
+            }
+        }
+
+        if(offset == -1){
+            offset = (end + size - 1) / size * size;
+            if(offset > end){
+                gaps.add(end);
+                gaps.add(offset - end);
+            }
+            end = offset + size;
+        }
+
+        fields.add(field);
+        owners.add(classFile);
+        offsets.add(offset);
+        sizes.add(size);
+    }
+
+    /*Replace the gap at index g with whatever is left either side of the new field*/
+    private void rebuildGap(final int g, final int gapStart, final int offset, final int size)
+    {
+        final int gapEnd = gapStart + gaps.get(g + 1);
+        final IntList remaining = new IntList();
+
+        for(int i = 0; i < gaps.size(); i += 2){
+            if(i != g){
+                remaining.add(gaps.get(i));
+                remaining.add(gaps.get(i + 1));
+            }
+        }
+        if(offset > gapStart){
+            remaining.add(gapStart);
+            remaining.add(offset - gapStart);
+        }
+        if(gapEnd > offset + size){
+            remaining.add(offset + size);
+            remaining.add(gapEnd - offset - size);
+        }
+
+        gaps.clear();
+        for(int i = 0; i < remaining.size(); i++){
+            gaps.add(remaining.get(i));
+        }
+    }
+
+    void finish(final int alignment)
+    {
+        instanceSize = (end + alignment - 1) / alignment * alignment;
+    }
+
+    public ClassFile getClassFile(){ return classFile; }
+
+    /*False if some superclass wasn't parsed, so its fields are missing*/
+    public boolean isComplete(){ return complete; }
+
+    public int getInstanceSize(){ return instanceSize; }
+
+    public int getHeaderSize(){ return headerSize; }
+
+    public int fieldCount(){ return fields.size(); }
+    public FieldInfo getField(final int index){ return fields.get(index); }
+    public ClassFile getFieldOwner(final int index){ return owners.get(index); }
+    public int getOffset(final int index){ return offsets.get(index); }
+    public int getSize(final int index){ return sizes.get(index); }
+
+    /*Bytes actually used by fields, own and inherited*/
+    public int getFieldBytes()
+    {
+        int total = 0;
+        for(int i = 0; i < sizes.size(); i++){
+            total += sizes.get(i);
+        }
+        return total;
+    }
+
+    /*Bytes lost to alignment gaps and the final rounding*/
+    public int getPadding()
+    {
+        return instanceSize - headerSize - getFieldBytes();
+    }
+}
@@ -0,0 +1,68 @@
+import java.util.*;
+import java.util.regex.*;
+
+/**
+ * Chooses classes by name, using comma separated patterns in dotted form
+ * such as "java.util.*" (classes directly in java.util), "com.acme.**"
+ * (everything under com.acme) or "*Test" (any class in the default package
+ * ending in Test). A pattern starting with '!' excludes whatever it
+ * matches. A class is chosen if it matches at least one including pattern
+ * (or there are none) and no excluding pattern.
+ *
+ * @author Luke Mercuri
+ */
+public class ClassNameFilter
+{
+    private final List<Pattern> includes = new ArrayList<Pattern>();
+    private final List<Pattern> excludes = new ArrayList<Pattern>();
+
+    public ClassNameFilter(final String patterns)
+    {
+        for(String pattern: patterns.split(",")){
+            pattern = pattern.trim();
+            if(pattern.startsWith("!")){
+                excludes.add(compile(pattern.substring(1)));
+            } else if(pattern.length() > 0){
+                includes.add(compile(pattern));
+            }
+        }
+    }
+
+    /*Turn a glob into a regex: ** crosses packages, * doesn't*/
+    private static Pattern compile(final String glob)
+    {
+        final StringBuilder regex = new StringBuilder();
+
+        for(int i = 0; i < glob.length(); i++){
+            final char c = glob.charAt(i);
+            if(c == '*' && i + 1 < glob.length() && glob.charAt(i + 1) == '*'){
+                regex.append(".*");
+                i++;
+            } else if(c == '*'){
+                regex.append("[^.]*");
+            } else if(c == '?'){
+                regex.append("[^.]");
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+
+        return Pattern.compile(regex.toString());
+    }
+
+    /*Whether a class (in internal or dotted form) is chosen*/
+    public boolean matches(final String className)
+    {
+        final String name = className.replace('/', '.');
+        boolean chosen = includes.isEmpty();
+
+        for(int i = 0; i < includes.size() && !chosen; i++){
+            chosen = includes.get(i).matcher(name).matches();
+        }
+        for(int i = 0; i < excludes.size() && chosen; i++){
+            chosen = !excludes.get(i).matcher(name).matches();
+        }
+
+        return chosen;
+    }
+}
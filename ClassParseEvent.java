@@ -0,0 +1,32 @@
+import jdk.jfr.*;
+
+/**
+ * Java Flight Recorder event covering the parse of a single class file.
+ * Recorded alongside the JVM's own GC and allocation events so slow or
+ * pathological inputs can be found from a recording of a normal run.
+ *
+ * @author Luke Mercuri
+ */
+@Name("ParseClass.ClassParse")
+@Label("Class File Parse")
+@Category({"ParseClass", "Parsing"})
+@Description("Reading and parsing of one class file")
+public class ClassParseEvent extends Event
+{
+    @Label("File Name")
+    String fileName;
+
+    @Label("Size")
+    @DataAmount
+    long size;
+
+    @Label("Constant Pool Count")
+    int constantPoolCount;
+
+    @Label("Method Count")
+    int methodCount;
+
+    @Label("Failure")
+    @Description("The exception the parse failed with, if it did")
+    String failure;
+}
@@ -0,0 +1,340 @@
+import java.io.*;
+import java.nio.file.*;
+
+/**
+ * Walks over the bytes of a class file, handing each part to a
+ * ClassVisitor, without building a ClassFile. The constant pool is only
+ * indexed (one int offset per entry); Utf8 entries are decoded the first
+ * time they're asked for, and nothing else is created unless asked for.
+ *
+ * @author Luke Mercuri
+ */
+public class ClassReader
+{
+    private final byte bytes[];
+    private final String filename;
+
+    /*Offset of each constant pool entry's tag byte*/
+    private final int offsets[];
+    private final String utf8[];
+    /*Offset of the access flags, just past the constant pool*/
+    private final int headerStart;
+
+    public ClassReader(final String filename) throws IOException, ClassFileParserException
+    {
+        this(Files.readAllBytes(Paths.get(filename)), filename);
+    }
+
+    /*The filename is optional, and only used in error messages*/
+    public ClassReader(final byte[] bytes, final String filename) throws ClassFileParserException
+    {
+        this.bytes = bytes;
+        this.filename = filename;
+
+        if(bytes.length < 10 || u4(0) != 0xCAFEBABE)
+        {
+            throw new MalformedClassException("Not a class file: " + filename);
+        }
+
+        offsets = new int[u2(8)];
+        utf8 = new String[offsets.length];
+
+        int offset = 10;
+        try
+        {
+            for(int i = 1; i < offsets.length; i++){
+                offsets[i] = offset;
+                final int tag = bytes[offset];
+
+                switch(tag){
+                    case 1: offset += 3 + u2(offset + 1); break;
+                    case 7: case 8: case 16: case 19: case 20: offset += 3; break;
+                    case 15: offset += 4; break;
+                    case 3: case 4: case 9: case 10: case 11: case 12: case 17: case 18: 
+                        offset += 5; break;
+                    //long and double take up two slots
+                    case 5: case 6: offset += 9; i++; break;
+                    default:
+                        throw new InvalidTagException(String.format("Invalid tag: 0x%02x", tag));
+                }
+            }
+        }
+        catch(ArrayIndexOutOfBoundsException e)
+        {
+            throw new MalformedClassException("Truncated class file: " + filename);
+        }
+
+        /*The last entry can run off the end without reading past it*/
+        if(offset > bytes.length)
+        {
+            throw new MalformedClassException("Truncated class file: " + filename);
+        }
+        headerStart = offset;
+    }
+
+
+    /*Visit the class from start to finish*/
+    public void accept(final ClassVisitor visitor) throws ClassFileParserException
+    {
+        try
+        {
+            for(int i = 1; i < offsets.length; i++){
+                if(offsets[i] != 0){
+                    visitor.visitConstant(i, getTag(i));
+                }
+            }
+
+            int offset = headerStart;
+            final int access = u2(offset);
+            final int superIndex = u2(offset + 4);
+            final String interfaces[] = new String[u2(offset + 6)];
+            for(int i = 0; i < interfaces.length; i++){
+                interfaces[i] = getClassName(u2(offset + 8 + i * 2));
+            }
+
+            if(!visitor.visitHeader(this, u2(6), access, getClassName(u2(offset + 2)),
+                superIndex == 0 ? null : getClassName(superIndex), interfaces))
+            {
+                return;
+            }
+            offset += 8 + interfaces.length * 2;
+
+            final int numFields = u2(offset);
+            offset += 2;
+            for(int f = 0; f < numFields; f++){
+                final boolean visit = visitor.visitField(u2(offset), 
+                    getUtf8(u2(offset + 2)), getUtf8(u2(offset + 4)));
+                offset = visit ? visitAttributes(visitor, offset + 6) : skipAttributes(offset + 6);
+            }
+
+            final int numMethods = u2(offset);
+            offset += 2;
+            for(int m = 0; m < numMethods; m++){
+                if(visitor.visitMethod(u2(offset), getUtf8(u2(offset + 2)), getUtf8(u2(offset + 4))))
+                {
+                    offset = visitAttributes(visitor, offset + 6);
+                    visitor.visitMethodEnd();
+                }
+                else
+                {
+                    offset = skipAttributes(offset + 6);
+                }
+            }
+
+            visitAttributes(visitor, offset);
+            visitor.visitEnd();
+        }
+        catch(ArrayIndexOutOfBoundsException e)
+        {
+            throw new MalformedClassException("Truncated class file: " + filename);
+        }
+    }
+
+    /*Visit an attributes_count and its attributes, returning the offset after them*/
+    private int visitAttributes(final ClassVisitor visitor, final int start) 
+        throws InvalidConstantPoolIndex
+    {
+        final int count = u2(start);
+        int offset = start + 2;
+
+        for(int a = 0; a < count; a++){
+            final String name = getUtf8(u2(offset));
+            final int length = u4(offset + 2);
+
+            if("Code".equals(name))
+            {
+                visitCode(visitor, offset + 6);
+            }
+            else if(visitor.visitAttribute(name, length))
+            {
+                visitor.visitAttributeBytes(name, bytes, offset + 6, length);
+            }
+            offset += 6 + length;
+        }
+
+        return offset;
+    }
+
+    private void visitCode(final ClassVisitor visitor, final int start) throws InvalidConstantPoolIndex
+    {
+        final int codeLength = u4(start + 4);
+        if(!visitor.visitCode(u2(start), u2(start + 2), codeLength))
+        {
+            return;
+        }
+
+        final int codeStart = start + 8;
+        for(int pc = 0; pc < codeLength;){
+            final int offset = codeStart + pc;
+            final Opcode opcode = Opcode.getOpcode(bytes[offset]);
+            visitor.visitInstruction(pc, opcode, getIndexOperand(opcode, offset));
+            pc += instructionSize(opcode, offset, pc);
+        }
+
+        final int handlers = u2(codeStart + codeLength);
+        visitAttributes(visitor, codeStart + codeLength + 2 + handlers * 8);
+    }
+
+    /*Skip an attributes_count and its attributes, returning the offset after them*/
+    private int skipAttributes(final int start)
+    {
+        final int count = u2(start);
+        int offset = start + 2;
+
+        for(int a = 0; a < count; a++){
+            offset += 6 + u4(offset + 2);
+        }
+        return offset;
+    }
+
+    private int getIndexOperand(final Opcode opcode, final int offset)
+    {
+        int index = -1;
+
+        switch(opcode){
+            case LDC:
+                index = bytes[offset + 1] & 0xff;
+                break;
+            case LDC_W: case LDC2_W:
+            case GETSTATIC: case PUTSTATIC: case GETFIELD: case PUTFIELD:
+            case INVOKEVIRTUAL: case INVOKESPECIAL: case INVOKESTATIC: 
+            case INVOKEINTERFACE: case INVOKEDYNAMIC:
+            case NEW: case ANEWARRAY: case CHECKCAST: case INSTANCEOF: case MULTIANEWARRAY:
+                index = u2(offset + 1);
+                break;
+            default:
+                break;
+        }
+        return index;
+    }
+
+    /*The switch instructions are padded to a multiple of four from
+    the start of the code, not the start of the class file*/
+    private int instructionSize(final Opcode opcode, final int offset, final int pc)
+    {
+        final int operandOffset = 4 - (pc % 4);
+
+        if(opcode == Opcode.TABLESWITCH)
+        {
+            final int low = u4(offset + operandOffset + 4);
+            final int high = u4(offset + operandOffset + 8);
+            return operandOffset + (3 + high - low + 1) * 4;
+        }
+        else if(opcode == Opcode.LOOKUPSWITCH)
+        {
+            return operandOffset + (2 + u4(offset + operandOffset + 4) * 2) * 4;
+        }
+        return opcode.getSize(bytes, offset);
+    }
+
+
+    public String getFilename(){ return filename; }
+
+    public int constantCount(){ return offsets.length; }
+
+    public int getTag(final int index) throws InvalidConstantPoolIndex
+    {
+        return bytes[offset(index)];
+    }
+
+    /*Decoded the first time it's asked for*/
+    public String getUtf8(final int index) throws InvalidConstantPoolIndex
+    {
+        final int offset = offset(index, "Utf8", 1);
+
+        String s = utf8[index];
+        if(s == null)
+        {
+            try
+            {
+                s = new DataInputStream(new ByteArrayInputStream(
+                    bytes, offset + 1, 2 + u2(offset + 1))).readUTF();
+            }
+            catch(IOException e)
+            {
+                throw new InvalidConstantPoolIndex(String.format(
+                    "Invalid Utf8 entry %d: %s", index, e.getMessage()));
+            }
+            utf8[index] = s;
+        }
+        return s;
+    }
+
+    /*Name of a Class entry*/
+    public String getClassName(final int index) throws InvalidConstantPoolIndex
+    {
+        return getUtf8(u2(offset(index, "Class", 7) + 1));
+    }
+
+    /*Owner, name and descriptor of a Fieldref, Methodref or InterfaceMethodref*/
+    public String getRefOwner(final int index) throws InvalidConstantPoolIndex
+    {
+        return getClassName(u2(refOffset(index) + 1));
+    }
+
+    public String getRefName(final int index) throws InvalidConstantPoolIndex
+    {
+        return getUtf8(u2(nameAndTypeOffset(index) + 1));
+    }
+
+    public String getRefType(final int index) throws InvalidConstantPoolIndex
+    {
+        return getUtf8(u2(nameAndTypeOffset(index) + 3));
+    }
+
+    private int refOffset(final int index) throws InvalidConstantPoolIndex
+    {
+        return offset(index, "Fieldref, Methodref or InterfaceMethodref", 9, 10, 11);
+    }
+
+    /*The NameAndType entry of a Fieldref, Methodref or InterfaceMethodref*/
+    private int nameAndTypeOffset(final int index) throws InvalidConstantPoolIndex
+    {
+        return offset(u2(refOffset(index) + 3), "NameAndType", 12);
+    }
+
+    /*Offset of an entry that has to have one of the given tags*/
+    private int offset(final int index, final String kind, final int... tags) throws InvalidConstantPoolIndex
+    {
+        final int offset = offset(index);
+        for(int tag: tags){
+            if(bytes[offset] == tag)
+            {
+                return offset;
+            }
+        }
+        throw new InvalidConstantPoolIndex(String.format(
+            "Constant pool entry %d is not a %s entry", index, kind));
+    }
+
+    private int offset(final int index) throws InvalidConstantPoolIndex
+    {
+        if(index < 1 || index >= offsets.length || offsets[index] == 0)
+        {
+            throw new InvalidConstantPoolIndex(String.format(
+                "Invalid constant pool index: %d", index));
+        }
+        return offsets[index];
+    }
+
+    private int u2(final int offset)
+    {
+        return CodeAttribute.u2(bytes, offset);
+    }
+
+    private int u4(final int offset)
+    {
+        return u2(offset) << 16 | u2(offset + 2);
+    }
+}
+
+
+/**
+ * Thrown when the bytes given to a ClassReader aren't a complete class file.
+ */
+class MalformedClassException extends ClassFileParserException
+{
+    private static final long serialVersionUID = 1L;
+
+    public MalformedClassException(final String msg) { super(msg); }
+}
@@ -0,0 +1,119 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.file.*;
+
+/**
+ * Where the bytes of a class file come from: a file, an array, a
+ * ByteBuffer or any InputStream. Arrays and buffers are read where they
+ * are rather than copied first, and whatever the source, the bytes
+ * consumed are counted for the --stats figures.
+ *
+ * @author Luke Mercuri
+ */
+final class ClassSource extends InputStream
+{
+    /*Exactly one of these is set*/
+    private final ByteBuffer buffer;
+    private final InputStream in;
+
+    /*Optional, only used to describe the class*/
+    private final String filename;
+    /*When reading started, so file reads count towards parse time*/
+    private final long start;
+    private long count = 0;
+
+    private ClassSource(final ByteBuffer buffer, final InputStream in, 
+        final String filename, final long start)
+    {
+        this.buffer = buffer;
+        this.in = in;
+        this.filename = filename;
+        this.start = start;
+    }
+
+    /*The whole file is read in one go rather than a couple of bytes at a time*/
+    static ClassSource of(final String filename) throws IOException
+    {
+        final long start = System.nanoTime();
+
+        ParseStats.begin(ParseStats.Phase.FILE_READ);
+        try
+        {
+            return new ClassSource(ByteBuffer.wrap(Files.readAllBytes(Paths.get(filename))),
+                null, filename, start);
+        }
+        finally
+        {
+            ParseStats.end();
+        }
+    }
+
+    /*Reads from the buffer's position up to its limit, without moving either*/
+    static ClassSource of(final ByteBuffer buffer, final String filename)
+    {
+        return new ClassSource(buffer.duplicate(), null, filename, System.nanoTime());
+    }
+
+    /*Read as it comes, with no buffering here, as a buffer would take
+    bytes past the end of the class away from whatever reads the
+    stream next.  Callers with a slow stream should buffer it themselves*/
+    static ClassSource of(final InputStream in, final String filename)
+    {
+        return new ClassSource(null, in, filename, System.nanoTime());
+    }
+
+    String getFilename(){ return filename; }
+    long getStart(){ return start; }
+
+    /*Bytes read so far*/
+    long getCount(){ return count; }
+
+    public int read() throws IOException
+    {
+        int b = -1;
+
+        if(buffer != null)
+        {
+            b = buffer.hasRemaining() ? (buffer.get() & 0xff) : -1;
+        }
+        else
+        {
+            b = in.read();
+        }
+
+        if(b != -1)
+        {
+            count++;
+        }
+        return b;
+    }
+
+    public int read(final byte[] b, final int off, final int len) throws IOException
+    {
+        int read = -1;
+
+        if(buffer != null)
+        {
+            if(buffer.hasRemaining() || len == 0)
+            {
+                read = Math.min(len, buffer.remaining());
+                buffer.get(b, off, read);
+            }
+        }
+        else
+        {
+            read = in.read(b, off, len);
+        }
+
+        if(read > 0)
+        {
+            count += read;
+        }
+        return read;
+    }
+
+    public int available() throws IOException
+    {
+        return (buffer != null) ? buffer.remaining() : in.available();
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Receives the parts of a class file, in file order, as a ClassReader
+ * walks over it. Nothing is built unless the visitor builds it, so scans
+ * that only count or list things avoid the cost of a full ClassFile.
+ *
+ * Every method does nothing by default, so a visitor only overrides what
+ * it's interested in. Those returning a boolean can return false to skip
+ * the rest of that part of the class (a method, an attribute, a code
+ * array, or everything after the header).
+ *
+ * Names are in internal form (java/lang/Object) and constant pool indexes
+ * can be looked up through the reader passed to visitHeader.
+ *
+ * @author Luke Mercuri
+ */
+public abstract class ClassVisitor
+{
+    /*Called once the constant pool has been indexed, with the reader
+    so entries can be looked up later.  superName is null for Object.
+    Return false to stop before the fields*/
+    public boolean visitHeader(final ClassReader reader, final int majorVersion, 
+        final int access, final String name, final String superName, final String[] interfaces)
+    {
+        return true;
+    }
+
+    /*Each constant pool entry (visited before the header)*/
+    public void visitConstant(final int index, final int tag){}
+
+    /*Return false to skip the field's attributes*/
+    public boolean visitField(final int access, final String name, final String descriptor)
+    {
+        return true;
+    }
+
+    /*Return false to skip the whole method, including its code*/
+    public boolean visitMethod(final int access, final String name, final String descriptor)
+    {
+        return true;
+    }
+
+    /*Any attribute of the class, a field, a method or a Code attribute.
+    Code attributes of methods are reported through visitCode instead.
+    Return false to skip it*/
+    public boolean visitAttribute(final String name, final int length)
+    {
+        return true;
+    }
+
+    /*The contents of an attribute that wasn't skipped, left in place in
+    the class file's bytes at [offset, offset + length)*/
+    public void visitAttributeBytes(final String name, final byte[] bytes, 
+        final int offset, final int length){}
+
+    /*Start of a method's code.  Return false to skip its instructions
+    and the attributes nested inside it*/
+    public boolean visitCode(final int maxStack, final int maxLocals, final int codeLength)
+    {
+        return true;
+    }
+
+    /*One instruction.  cpIndex is the constant pool index it refers 
+    to (ldc, field and method access, new, checkcast, etc) or -1*/
+    public void visitInstruction(final int pc, final Opcode opcode, final int cpIndex){}
+
+    /*End of a method that wasn't skipped*/
+    public void visitMethodEnd(){}
+
+    /*End of the class (not called if visitHeader returned false)*/
+    public void visitEnd(){}
+}
@@ -12,6 +12,10 @@ import java.util.*;
 @SuppressWarnings("PMD.UnusedPrivateField")
 class CodeAttribute extends AttributeInfo
 {
+    /*Classes whose static valueOf() methods box primitives*/
+    private static final Set<String> BOXED_TYPES = new HashSet<String>(Arrays.asList(
+        "Boolean", "Byte", "Character", "Short", "Integer", "Long", "Float", "Double"));
+
     private final int length;
     private final int maxStack;
     private final int maxLocals;
@@ -36,12 +40,14 @@ class CodeAttribute extends AttributeInfo
         dis.readFully(code);
 
         /*loop through code and find all instructions*/
+        ParseStats.begin(ParseStats.Phase.CODE_DECODE);
         for(int i = 0; i < code.length;){
             final Instruction instruction = new Instruction(code, i);
             /*size of instruction will vary with instruction type*/
             i += instruction.getSize();
             instructions.add(instruction);
         }
+        ParseStats.end();
 
         /*Information about where exceptions can be thrown/caught within code*/
         exceptionHandlers = new ExceptionHandler[dis.readUnsignedShort()];
@@ -76,7 +82,9 @@ class CodeAttribute extends AttributeInfo
         /*Loop through all instructions for calls*/
         for(Instruction instruction: instructions){
             if(Arrays.asList(callTypes).contains(instruction.getOpcode())){
-                final int index = instruction.getExtraBytes()[1];
+                /*indexbyte1 << 8 | indexbyte2*/
+                final byte[] extraBytes = instruction.getExtraBytes();
+                final int index = (extraBytes[0] & 0xff) << 8 | (extraBytes[1] & 0xff);
                 /*add methodRef to list of methods called*/
                 methodRefs.add(cf.getMethodRefFromCPIndex(index));
             }
@@ -94,6 +102,347 @@ class CodeAttribute extends AttributeInfo
         return methodArray;
     }
 
+    /*Constant Pool indexes of every invoke[virtual|special|static|interface]
+    in this code, in order.  Walks the raw bytecode rather than the
+    Instruction list so no objects are created per instruction*/
+    public int[] getInvokeIndexes(){
+        final int sites[] = findInstructions(Opcode.INVOKEVIRTUAL, Opcode.INVOKESPECIAL,
+            Opcode.INVOKESTATIC, Opcode.INVOKEINTERFACE);
+
+        for(int i = 0; i < sites.length; i++){
+            sites[i] = getIndexOperand(sites[i]);
+        }
+
+        return sites;
+    }
+
+    /*Bytecode offsets of every instruction using one of the given opcodes*/
+    public int[] findInstructions(final Opcode... opcodes){
+        final IntList offsets = new IntList();
+
+        for(int pc = 0; pc < code.length;){
+            final Opcode opcode = Opcode.getOpcode(code[pc]);
+
+            for(Opcode wanted: opcodes){
+                if(opcode == wanted){
+                    offsets.add(pc);
+                    break;
+                }
+            }
+
+            pc += opcode.getSize(code, pc);
+        }
+
+        return offsets.toArray();
+    }
+
+    /*
+    Count the allocations made inside loops.  A loop is taken to be
+    the code between a backward branch and its target.  Allocation
+    sites are new, the array creating instructions and calls to the
+    boxing valueOf() methods.  This is a single walk of the bytecode
+    followed by a sweep over the loop ranges
+    */
+    public LoopAllocations findLoopAllocations(final ClassFile cf) throws InvalidConstantPoolIndex{
+        final IntList objectSites = new IntList();
+        final IntList arraySites = new IntList();
+        final IntList boxingSites = new IntList();
+        int depth[] = null;
+
+        for(int pc = 0; pc < code.length;){
+            final Opcode opcode = Opcode.getOpcode(code[pc]);
+            int target = pc;
+
+            switch(opcode){
+                case NEW:
+                    objectSites.add(pc);
+                    break;
+                case NEWARRAY:
+                case ANEWARRAY:
+                case MULTIANEWARRAY:
+                    arraySites.add(pc);
+                    break;
+                case INVOKESTATIC:
+                    if(isBoxing(cf.getMethodRefFromCPIndex(getIndexOperand(pc)))){
+                        boxingSites.add(pc);
+                    }
+                    break;
+                case IFEQ: case IFNE: case IFLT: case IFGE: case IFGT: case IFLE:
+                case IF_ICMPEQ: case IF_ICMPNE: case IF_ICMPLT: case IF_ICMPGE:
+                case IF_ICMPGT: case IF_ICMPLE: case IF_ACMPEQ: case IF_ACMPNE:
+                case IFNULL: case IFNONNULL: case GOTO:
+                    target = pc + (short)getIndexOperand(pc);
+                    break;
+                case GOTO_W:
+                    target = pc + (getIndexOperand(pc) << 16 | getIndexOperand(pc + 2));
+                    break;
+                default:
+                    break;
+            }
+
+            //backward branch, so [target, pc] is a loop body
+            if(target < pc){
+                if(depth == null){
+                    depth = new int[code.length + 1];
+                }
+                depth[target]++;
+                depth[pc + 1]--;
+            }
+
+            pc += opcode.getSize(code, pc);
+        }
+
+        final LoopAllocations allocations = new LoopAllocations();
+        if(depth != null){
+            for(int pc = 1; pc < depth.length; pc++){
+                depth[pc] += depth[pc - 1];
+            }
+            allocations.objects = countInLoops(objectSites, depth);
+            allocations.arrays = countInLoops(arraySites, depth);
+            allocations.boxing = countInLoops(boxingSites, depth);
+        }
+
+        return allocations;
+    }
+
+    /*
+    Find the monitorenter/monitorexit sites and the calls made while
+    a monitor is held.  A synchronized method holds its monitor
+    throughout.  Otherwise the nesting depth is worked out by
+    following every branch and exception handler from the start of
+    the code, since a block left early (by a return or break) has
+    its monitorexit before code that still runs under the lock
+    */
+    public MonitorUsage findMonitorUsage(final ClassFile cf, final boolean synchronised) 
+        throws InvalidConstantPoolIndex{
+        final MonitorUsage usage = new MonitorUsage();
+        final int depth[] = synchronised ? null : findMonitorDepths();
+
+        for(int pc = 0; pc < code.length;){
+            final Opcode opcode = Opcode.getOpcode(code[pc]);
+
+            switch(opcode){
+                case MONITORENTER:
+                    usage.enterSites.add(pc);
+                    break;
+                case MONITOREXIT:
+                    usage.exitSites.add(pc);
+                    break;
+                case INVOKEVIRTUAL:
+                case INVOKESPECIAL:
+                case INVOKESTATIC:
+                case INVOKEINTERFACE:
+                    if(synchronised || depth[pc] > 0){
+                        usage.lockedCalls.add(cf.getFullMethodNameFromRef(
+                            cf.getMethodRefFromCPIndex(getIndexOperand(pc))));
+                    }
+                    break;
+                default:
+                    break;
+            }
+
+            pc += opcode.getSize(code, pc);
+        }
+
+        return usage;
+    }
+
+    /*
+    Number of monitors held on entry to each instruction, or -1 for
+    code that can't be reached.  Where paths disagree the deeper one
+    wins, and the depth is capped at the number of monitorenters so
+    unbalanced locking in a loop can't keep it growing
+    */
+    private int[] findMonitorDepths(){
+        final int depth[] = new int[code.length];
+        Arrays.fill(depth, -1);
+        final int maxDepth = findInstructions(Opcode.MONITORENTER).length;
+        if(maxDepth == 0){
+            Arrays.fill(depth, 0);
+            return depth;
+        }
+
+        final IntList pending = new IntList();
+        final IntList successors = new IntList();
+        mergeDepth(depth, pending, 0, 0);
+
+        while(pending.size() > 0){
+            final int pc = pending.removeLast();
+            final Opcode opcode = Opcode.getOpcode(code[pc]);
+            int after = depth[pc];
+
+            if(opcode == Opcode.MONITORENTER){
+                after = Math.min(after + 1, maxDepth);
+            } else if(opcode == Opcode.MONITOREXIT){
+                after = Math.max(after - 1, 0);
+            }
+
+            successors.clear();
+            findSuccessors(pc, opcode, successors);
+            for(int i = 0; i < successors.size(); i++){
+                mergeDepth(depth, pending, successors.get(i), after);
+            }
+
+            //an exception leaves before the instruction has had its effect
+            for(ExceptionHandler handler: exceptionHandlers){
+                if(handler.covers(pc)){
+                    mergeDepth(depth, pending, handler.getHandlerPC(), depth[pc]);
+                }
+            }
+        }
+
+        return depth;
+    }
+
+    private static void mergeDepth(final int depth[], final IntList pending, final int pc, final int value){
+        if(pc >= 0 && pc < depth.length && value > depth[pc]){
+            depth[pc] = value;
+            pending.add(pc);
+        }
+    }
+
+    /*
+    Where control can go after the instruction at pc, other than its
+    exception handlers.  A ret's return address isn't tracked, but the
+    instruction after each jsr is counted as reachable instead
+    */
+    private void findSuccessors(final int pc, final Opcode opcode, final IntList successors){
+        switch(opcode){
+            case IFEQ: case IFNE: case IFLT: case IFGE: case IFGT: case IFLE:
+            case IF_ICMPEQ: case IF_ICMPNE: case IF_ICMPLT: case IF_ICMPGE:
+            case IF_ICMPGT: case IF_ICMPLE: case IF_ACMPEQ: case IF_ACMPNE:
+            case IFNULL: case IFNONNULL: case JSR:
+                successors.add(pc + (short)getIndexOperand(pc));
+                successors.add(pc + opcode.getSize(code, pc));
+                break;
+            case JSR_W:
+                successors.add(pc + s4(code, pc + 1));
+                successors.add(pc + opcode.getSize(code, pc));
+                break;
+            case GOTO:
+                successors.add(pc + (short)getIndexOperand(pc));
+                break;
+            case GOTO_W:
+                successors.add(pc + s4(code, pc + 1));
+                break;
+            case TABLESWITCH:
+            case LOOKUPSWITCH:{
+                //operands start at the next multiple of four after the opcode
+                final int base = pc + 4 - (pc % 4);
+                successors.add(pc + s4(code, base));
+                if(opcode == Opcode.TABLESWITCH){
+                    final int count = s4(code, base + 8) - s4(code, base + 4) + 1;
+                    for(int i = 0; i < count; i++){
+                        successors.add(pc + s4(code, base + 12 + 4 * i));
+                    }
+                } else {
+                    final int count = s4(code, base + 4);
+                    for(int i = 0; i < count; i++){
+                        successors.add(pc + s4(code, base + 12 + 8 * i));
+                    }
+                }
+                break;
+            }
+            case IRETURN: case LRETURN: case FRETURN: case DRETURN:
+            case ARETURN: case RETURN: case ATHROW: case RET:
+                break;
+            default:
+                successors.add(pc + opcode.getSize(code, pc));
+                break;
+        }
+    }
+
+    /*
+    Classes whose initialisation this code can trigger: those it
+    creates with new, or whose static fields and methods it uses
+    */
+    public Set<String> findInitTriggers(final ClassFile cf) throws InvalidConstantPoolIndex{
+        final Set<String> classes = new LinkedHashSet<String>();
+
+        for(int pc = 0; pc < code.length;){
+            final Opcode opcode = Opcode.getOpcode(code[pc]);
+
+            switch(opcode){
+                case NEW:
+                    classes.add(((ConstantClass)cf.getCPEntry(getIndexOperand(pc))).getName());
+                    break;
+                case GETSTATIC:
+                case PUTSTATIC:
+                    classes.add(cf.getFieldRefFromCPIndex(getIndexOperand(pc)).getClassName());
+                    break;
+                case INVOKESTATIC:
+                    classes.add(cf.getMethodRefFromCPIndex(getIndexOperand(pc)).getClassName());
+                    break;
+                default:
+                    break;
+            }
+
+            pc += opcode.getSize(code, pc);
+        }
+
+        return classes;
+    }
+
+    /*Every invokedynamic in this code, linked to its bootstrap method*/
+    public List<IndySite> findIndySites(final ClassFile cf) throws InvalidConstantPoolIndex{
+        final List<IndySite> sites = new ArrayList<IndySite>();
+
+        for(int pc = 0; pc < code.length;){
+            final Opcode opcode = Opcode.getOpcode(code[pc]);
+
+            if(opcode == Opcode.INVOKEDYNAMIC){
+                final ConstantInvokeDynamic indy = 
+                    (ConstantInvokeDynamic)cf.getCPEntry(getIndexOperand(pc));
+                sites.add(new IndySite(pc, indy, cf.getBootstrapMethod(indy)));
+            }
+
+            pc += opcode.getSize(code, pc);
+        }
+
+        return sites;
+    }
+
+    private static int countInLoops(final IntList sites, final int depth[]){
+        int count = 0;
+        for(int i = 0; i < sites.size(); i++){
+            if(depth[sites.get(i)] > 0){
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /*Integer.valueOf(int) and friends, used by autoboxing.  The single
+    parameter has to be a primitive, as the valueOf(String) overloads
+    parse rather than box*/
+    private static boolean isBoxing(final ConstantRef ref){
+        final String owner = ref.getClassName();
+        final String type = ref.getType();
+        return "valueOf".equals(ref.getName()) && owner.startsWith("java/lang/") &&
+            BOXED_TYPES.contains(owner.substring("java/lang/".length())) &&
+            type.length() > 3 && type.charAt(0) == '(' && type.charAt(2) == ')' &&
+            "ZBCSIJFD".indexOf(type.charAt(1)) >= 0;
+    }
+
+    public Opcode getOpcodeAt(final int pc){
+        return Opcode.getOpcode(code[pc]);
+    }
+
+    /*The two byte Constant Pool index following the opcode at pc*/
+    public int getIndexOperand(final int pc){
+        return u2(code, pc + 1);
+    }
+
+    /*Unsigned big-endian 16 bit value at the given offset*/
+    public static int u2(final byte[] bytes, final int offset){
+        return (bytes[offset] & 0xff) << 8 | (bytes[offset + 1] & 0xff);
+    }
+
+    /*Signed big-endian 32 bit value at the given offset*/
+    public static int s4(final byte[] bytes, final int offset){
+        return u2(bytes, offset) << 16 | u2(bytes, offset + 2);
+    }
+
     /*String representation of code attribute*/
     public String toString(final int tabs){
         final StringBuffer s = new StringBuffer("\n");
@@ -109,7 +458,33 @@ class CodeAttribute extends AttributeInfo
         return s.toString();
     }
 
+    public void addFootprint(final Footprint fp){
+        super.addFootprint(fp);
+        fp.addArray(Footprint.Category.ATTRIBUTES, code);
+
+        fp.addList(Footprint.Category.INSTRUCTIONS, instructions);
+        for(Instruction instruction: instructions){
+            instruction.addFootprint(fp);
+        }
+
+        fp.addArray(Footprint.Category.STRUCTURE, exceptionHandlers);
+        for(ExceptionHandler handler: exceptionHandlers){
+            fp.addObject(Footprint.Category.STRUCTURE, handler);
+        }
+
+        fp.addArray(Footprint.Category.STRUCTURE, attributes);
+        for(AttributeInfo attribute: attributes){
+            attribute.addFootprint(fp);
+        }
+    }
+
     public String getNameString(){ return "Code"; }
 
     public int getLength() { return codeLength; }
+
+    public int getMaxStack() { return maxStack; }
+    public int getMaxLocals() { return maxLocals; }
+
+    /*Length of the whole attribute, including exception table and nested attributes*/
+    public int getAttributeLength() { return length; }
 }
@@ -0,0 +1,54 @@
+import java.util.concurrent.atomic.*;
+
+/**
+ * A fixed-size bit set that many threads can set bits in at once. Used to
+ * mark visited nodes when walking the call graph in parallel.
+ *
+ * @author Luke Mercuri
+ */
+public class ConcurrentBitSet
+{
+    private final AtomicLongArray words;
+    private final int size;
+
+    public ConcurrentBitSet(final int size)
+    {
+        this.size = size;
+        words = new AtomicLongArray((size + 63) >>> 6);
+    }
+
+    /*Set a bit, returning true only for the thread that actually set it*/
+    public boolean set(final int index)
+    {
+        final int word = index >>> 6;
+        final long mask = 1L << (index & 63);
+
+        long old = words.get(word);
+        while((old & mask) == 0)
+        {
+            if(words.compareAndSet(word, old, old | mask))
+            {
+                return true;
+            }
+            old = words.get(word);
+        }
+        return false;
+    }
+
+    public boolean get(final int index)
+    {
+        return (words.get(index >>> 6) & (1L << (index & 63))) != 0;
+    }
+
+    public int size(){ return size; }
+
+    /*Number of bits set*/
+    public int cardinality()
+    {
+        int count = 0;
+        for(int i = 0; i < words.length(); i++){
+            count += Long.bitCount(words.get(i));
+        }
+        return count;
+    }
+}
@@ -0,0 +1,40 @@
+import java.io.*;
+
+/**
+ * Represents a CONSTANT_Class entry (tag == 7). This holds a reference to a 
+ * Utf8 entry containing a class name (just a raw index until 
+ * resolveReferences() is called).
+ *
+ * @author David Cooper
+ */
+class ConstantClass extends CPEntry
+{
+    private final int nameIndex;
+    private ConstantUtf8 nameEntry = null;
+
+    public ConstantClass(final DataInputStream dis) throws IOException
+    {
+        this.nameIndex = dis.readUnsignedShort();
+    }
+
+    public void resolveReferences(final ConstantPool cp)
+        throws InvalidConstantPoolIndex
+    {
+        this.nameEntry = (ConstantUtf8)cp.getEntry(nameIndex);
+    }
+
+    public int getNameIndex()    { return nameIndex; }
+    public String getName()      { return nameEntry.getBytes(); }
+
+    public String getTagString() { return "Class"; }
+    public String getValues()
+    {
+        return String.format("name_index=0x%02x", nameIndex);
+    }
+
+    public String toString(final int tabs){
+        final StringBuffer s = new StringBuffer(Grosstab.str(tabs));
+        s.append((nameEntry == null) ? getValues() : getName());
+        return s.toString();
+    }
+}
@@ -0,0 +1,48 @@
+import java.io.*;
+
+/**
+ * Represents a CONSTANT_InvokeDynamic entry (tag == 18). Such entries are used
+ * in conjunction with the invokedynamic instruction to determine which method 
+ * should actually be invoked.
+ *
+ * @author David Cooper
+ */
+class ConstantInvokeDynamic extends CPEntry
+{
+    private final int bootstrapMethodIndex;
+    private final int nameAndTypeIndex;
+    
+    private ConstantNameAndType nameAndTypeEntry = null;
+
+    public ConstantInvokeDynamic(final DataInputStream dis) throws IOException
+    {
+        this.bootstrapMethodIndex = dis.readUnsignedShort();
+        this.nameAndTypeIndex = dis.readUnsignedShort();
+    }
+
+    public void resolveReferences(final ConstantPool cp)
+        throws InvalidConstantPoolIndex
+    {
+        this.nameAndTypeEntry =
+            (ConstantNameAndType)cp.getEntry(nameAndTypeIndex);
+    }
+
+    public int getBootstrapMethodIndex() { return bootstrapMethodIndex; }
+    public int getNameAndTypeIndex()     { return nameAndTypeIndex; }
+    public String getName()              { return nameAndTypeEntry.getName(); }
+    public String getType()              { return nameAndTypeEntry.getType(); }
+
+    public String getTagString() { return "InvokeDynamic"; }
+    public String getValues()
+    {
+        return String.format(
+            "bootstrap_method_attr_index=0x%02x, name_and_type_index=0x%02x",
+            bootstrapMethodIndex, nameAndTypeIndex);
+    }
+
+    public String toString(final int tabs){
+        return Grosstab.str(tabs) + String.format(
+            "Bootstrap method: %s, Name: %s, Type: %s",
+            bootstrapMethodIndex, getName(), getType());
+    }
+}
@@ -0,0 +1,48 @@
+import java.io.*;
+
+/**
+ * Represents a CONSTANT_MethodHandle entry (tag == 15).
+ *
+ * @author David Cooper
+ */
+class ConstantMethodHandle extends CPEntry
+{
+    private final byte kind;
+    private final int index;
+    private CPEntry entry = null;
+    
+    public ConstantMethodHandle(final DataInputStream dis) throws IOException
+    {
+        this.kind = dis.readByte();
+        this.index = dis.readUnsignedShort();
+    }
+    
+    public void resolveReferences(final ConstantPool cp)
+        throws InvalidConstantPoolIndex
+    {
+        this.entry = cp.getEntry(index);
+    }
+    
+    public byte getKind()     { return kind; }
+    public int getIndex()     { return index; }
+    public CPEntry getEntry() { return entry; }
+
+    /*The field or method referred to, or null if the handle isn't resolved*/
+    public ConstantRef getReference()
+    {
+        return (entry instanceof ConstantRef) ? (ConstantRef)entry : null;
+    }
+    
+    public String getTagString() { return "MethodHandle"; }
+    public String getValues()
+    {
+        return String.format("reference_kind=%d, reference_index=0x%02x", 
+                             kind, index);
+    }
+
+    public String toString(final int tabs){
+        final StringBuffer s = new StringBuffer(Grosstab.str(tabs)); 
+        s.append((entry == null) ? getValues() : entry.toString(tabs));
+        return s.toString();
+    }
+}
@@ -0,0 +1,53 @@
+import java.io.*;
+
+/**
+ * Represents a CONSTANT_NameAndType entry (tag == 12). This holds references 
+ * to two Utf8 entries containing the "name" and "type" (or descriptor) of a
+ * field or method (both just raw indexes until resolveReferences() is
+ * called).
+ *
+ * @author David Cooper
+ */
+class ConstantNameAndType extends CPEntry
+{
+    private final int nameIndex;
+    private final int typeIndex;
+
+    private ConstantUtf8 nameEntry = null;
+    private ConstantUtf8 typeEntry = null;
+
+    public ConstantNameAndType(final DataInputStream dis) throws IOException
+    {
+        this.nameIndex = dis.readUnsignedShort();
+        this.typeIndex = dis.readUnsignedShort();
+    }
+
+    public void resolveReferences(final ConstantPool cp)
+        throws InvalidConstantPoolIndex
+    {
+        this.nameEntry = (ConstantUtf8)cp.getEntry(nameIndex);
+        this.typeEntry = (ConstantUtf8)cp.getEntry(typeIndex);
+    }
+
+    public int getNameIndex()    { return nameIndex; }
+    public int getTypeIndex()    { return typeIndex; }
+
+    public String getName()      { return nameEntry.getBytes(); }
+    public String getType()      { return typeEntry.getBytes(); }
+
+    public String getTagString() { return "NameAndType"; }
+    public String getValues()
+    {
+        return String.format("name_index=0x%02x, type_index=0x%02x",
+            nameIndex, typeIndex);
+    }
+
+    public String toString(final int tabs){
+        final StringBuffer s = new StringBuffer(Grosstab.str(tabs)); 
+        s.append((nameEntry == null) ? getValues() : " Name: ");
+        s.append(getName());
+        s.append(" Type: ");
+        s.append(getType());
+        return s.toString();
+    }
+}
@@ -1,13 +1,49 @@
 import java.io.*;
+import java.util.*;
 
 /**
  * Parses and stores the constant pool from a Java .class file.
  *
+ * Entries are held as parallel arrays rather than one object each: a tag
+ * per slot, the indexes each entry refers to packed into an int, and the
+ * contents of Utf8 and numeric entries copied back to back into a single
+ * byte array. Utf8 strings are decoded the first time they are asked for,
+ * and a CPEntry object is only built (and kept) when getEntry() is called,
+ * so code that only needs names can use the typed accessors and never
+ * create one.
+ *
  * @author David Cooper
  */
 public class ConstantPool
 {
-    private final CPEntry[] entries;
+    /*Tag values, as used in the class file*/
+    public static final int UTF8 = 1;
+    public static final int INTEGER = 3;
+    public static final int FLOAT = 4;
+    public static final int LONG = 5;
+    public static final int DOUBLE = 6;
+    public static final int CLASS = 7;
+    public static final int STRING = 8;
+    public static final int FIELDREF = 9;
+    public static final int METHODREF = 10;
+    public static final int INTERFACE_METHODREF = 11;
+    public static final int NAME_AND_TYPE = 12;
+    public static final int METHOD_HANDLE = 15;
+    public static final int METHOD_TYPE = 16;
+    public static final int INVOKE_DYNAMIC = 18;
+
+    /*Zero for index 0 and the slot after a Long or Double*/
+    private final byte tags[];
+    /*The index(es) an entry refers to, two u2 values packed as
+    (first << 16 | second), a MethodHandle as (kind << 16 | index),
+    or the offset into data for Utf8 and numeric entries*/
+    private final int operands[];
+    /*Utf8 entries (u2 length then bytes) and numeric values*/
+    private final byte data[];
+
+    /*Filled in as they are asked for*/
+    private final String strings[];
+    private final CPEntry entries[];
 
     /**
      * Parses the constant pool, including the length, constructing a
@@ -18,51 +54,340 @@ public class ConstantPool
                                                     IOException
     {
         final int len = dis.readUnsignedShort();
+        tags = new byte[len];
+        operands = new int[len];
+        strings = new String[len];
         entries = new CPEntry[len];
-        int i;
 
-        // Initialise entries to null.
-        for(i = 0; i < len; i++)
-        {
-            entries[i] = null;
-        }
+        byte buffer[] = new byte[Math.max(64, len * 8)];
+        int size = 0;
 
-        i = 1;
+        int i = 1;
         while(i < len)
         {
-            entries[i] = CPEntry.parse(dis);
+            final int tag = dis.readUnsignedByte();
+            tags[i] = (byte)tag;
+
+            switch(tag)
+            {
+                case UTF8: case INTEGER: case FLOAT: case LONG: case DOUBLE:
+                    final int length = (tag == UTF8) ? dis.readUnsignedShort() :
+                        (tag == LONG || tag == DOUBLE) ? 8 : 4;
+                    final int needed = size + length + 2;
+                    if(needed > buffer.length)
+                    {
+                        buffer = Arrays.copyOf(buffer, Math.max(needed, buffer.length * 2));
+                    }
+
+                    operands[i] = size;
+                    if(tag == UTF8)
+                    {
+                        buffer[size++] = (byte)(length >> 8);
+                        buffer[size++] = (byte)length;
+                    }
+                    dis.readFully(buffer, size, length);
+                    size += length;
+                    break;
+                case CLASS: case STRING: case METHOD_TYPE:
+                    operands[i] = dis.readUnsignedShort();
+                    break;
+                case METHOD_HANDLE:
+                    operands[i] = dis.readUnsignedByte() << 16 | dis.readUnsignedShort();
+                    break;
+                case FIELDREF: case METHODREF: case INTERFACE_METHODREF:
+                case NAME_AND_TYPE: case INVOKE_DYNAMIC:
+                    operands[i] = dis.readUnsignedShort() << 16 | dis.readUnsignedShort();
+                    break;
+                default:
+                    throw new InvalidTagException(
+                        String.format("Invalid tag: 0x%02x", tag));
+            }
 
             // We can't just have i++, because certain entries (Long and
             // Double) count for two entries.
-            i += entries[i].getEntryCount();
+            i += (tag == LONG || tag == DOUBLE) ? 2 : 1;
         }
+        data = Arrays.copyOf(buffer, size);
 
-        // Once the constant pool has been parsed, resolve the various
-        // internal references.
-        for(i = 0; i < len; i++)
+        // Once the constant pool has been parsed, check the various
+        // internal references point at entries of the right type.
+        for(i = 1; i < len; i++)
         {
-            if(entries[i] != null)
+            switch(tags[i])
             {
-                entries[i].resolveReferences(this);
+                case CLASS: case STRING: case METHOD_TYPE:
+                    checkTag(operands[i], UTF8);
+                    break;
+                case NAME_AND_TYPE:
+                    checkTag(operands[i] >>> 16, UTF8);
+                    checkTag(operands[i] & 0xffff, UTF8);
+                    break;
+                case FIELDREF: case METHODREF: case INTERFACE_METHODREF:
+                    checkTag(operands[i] >>> 16, CLASS);
+                    checkTag(operands[i] & 0xffff, NAME_AND_TYPE);
+                    break;
+                case INVOKE_DYNAMIC:
+                    checkTag(operands[i] & 0xffff, NAME_AND_TYPE);
+                    break;
+                case METHOD_HANDLE:
+                    checkTag(operands[i] & 0xffff, 0);
+                    break;
+                default:
+                    break;
             }
         }
     }
 
-    /** Retrieves a given constant pool entry. */
-    public CPEntry getEntry(final int index) throws InvalidConstantPoolIndex
+    /*Throw if index isn't an entry with the given tag (0 for any)*/
+    private void checkTag(final int index, final int tag) throws InvalidConstantPoolIndex
+    {
+        final int actual = getTag(index);
+        if(tag != 0 && actual != tag)
+        {
+            throw new InvalidConstantPoolIndex(String.format(
+                "Invalid constant pool index: %d (tag %d, expected %d)", index, actual, tag));
+        }
+    }
+
+    /** Returns the tag of a given entry. */
+    public int getTag(final int index) throws InvalidConstantPoolIndex
     {
-        if(index < 0 || index > entries.length)
+        if(index < 0 || index >= tags.length)
         {
             throw new InvalidConstantPoolIndex(String.format(
                 "Invalid constant pool index: %d (not in range [0, %d])",
-                index, entries.length));
+                index, tags.length));
         }
-        else if(entries[index] == null)
+        else if(tags[index] == 0)
         {
             throw new InvalidConstantPoolIndex(String.format(
                 "Invalid constant pool index: %d (entry undefined)\n", index));
         }
-        return entries[index];
+        return tags[index];
+    }
+
+    /**
+     * Retrieves a given constant pool entry, building it the first time it
+     * is asked for.
+     */
+    public synchronized CPEntry getEntry(final int index) throws InvalidConstantPoolIndex
+    {
+        final int tag = getTag(index);
+        CPEntry entry = entries[index];
+
+        if(entry == null)
+        {
+            if(tag == UTF8)
+            {
+                entry = new ConstantUtf8(getUtf8(index));
+            }
+            else
+            {
+                try
+                {
+                    entry = CPEntry.parse(new DataInputStream(
+                        new ByteArrayInputStream(encode(index))));
+                }
+                catch(IOException e)
+                {
+                    throw new IllegalStateException(e);
+                }
+                catch(InvalidTagException e)
+                {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+            entry.resolveReferences(this);
+            entries[index] = entry;
+        }
+        return entry;
+    }
+
+    /*The entry as it appeared in the class file, for CPEntry.parse()*/
+    private byte[] encode(final int index)
+    {
+        final int tag = tags[index];
+        final int operand = operands[index];
+        byte bytes[];
+
+        switch(tag)
+        {
+            case INTEGER: case FLOAT: case LONG: case DOUBLE:
+                final int length = (tag == LONG || tag == DOUBLE) ? 8 : 4;
+                bytes = new byte[1 + length];
+                System.arraycopy(data, operand, bytes, 1, length);
+                break;
+            case CLASS: case STRING: case METHOD_TYPE:
+                bytes = new byte[]{0, (byte)(operand >> 8), (byte)operand};
+                break;
+            case METHOD_HANDLE:
+                bytes = new byte[]{0, (byte)(operand >> 16), (byte)(operand >> 8), (byte)operand};
+                break;
+            default:
+                bytes = new byte[]{0, (byte)(operand >> 24), (byte)(operand >> 16), 
+                    (byte)(operand >> 8), (byte)operand};
+                break;
+        }
+        bytes[0] = (byte)tag;
+
+        return bytes;
+    }
+
+
+    /** Returns the text of a Utf8 entry. */
+    public String getUtf8(final int index) throws InvalidConstantPoolIndex
+    {
+        checkTag(index, UTF8);
+
+        //Strings are immutable, so a race here only means decoding twice
+        String s = strings[index];
+        if(s == null)
+        {
+            final int offset = operands[index];
+            s = new String(data, offset + 2, CodeAttribute.u2(data, offset));
+            strings[index] = s;
+        }
+        return s;
+    }
+
+    /** Returns the name of a Class entry. */
+    public String getClassName(final int index) throws InvalidConstantPoolIndex
+    {
+        checkTag(index, CLASS);
+        return getUtf8(operands[index]);
+    }
+
+    /** Returns the value of a String entry. */
+    public String getString(final int index) throws InvalidConstantPoolIndex
+    {
+        checkTag(index, STRING);
+        return getUtf8(operands[index]);
+    }
+
+    /** Returns the class name of a Fieldref, Methodref or InterfaceMethodref. */
+    public String getRefClassName(final int index) throws InvalidConstantPoolIndex
+    {
+        getTag(index);
+        return getClassName(operands[index] >>> 16);
+    }
+
+    /**
+     * Returns the name of a Fieldref, Methodref, InterfaceMethodref or
+     * InvokeDynamic entry.
+     */
+    public String getRefName(final int index) throws InvalidConstantPoolIndex
+    {
+        getTag(index);
+        final int nameAndType = operands[index] & 0xffff;
+        checkTag(nameAndType, NAME_AND_TYPE);
+        return getUtf8(operands[nameAndType] >>> 16);
+    }
+
+    /** Returns the descriptor of the same kinds of entry as getRefName(). */
+    public String getRefType(final int index) throws InvalidConstantPoolIndex
+    {
+        getTag(index);
+        final int nameAndType = operands[index] & 0xffff;
+        checkTag(nameAndType, NAME_AND_TYPE);
+        return getUtf8(operands[nameAndType] & 0xffff);
+    }
+
+    /** Returns the constant_pool_count, one more than the last index. */
+    public int size()
+    {
+        return tags.length;
+    }
+
+    /** Counts the entries with a given tag (e.g. ConstantPool.UTF8). */
+    public int countEntries(final int tag)
+    {
+        int count = 0;
+        for(byte t: tags)
+        {
+            if(t == tag)
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** Returns the distinct class names referred to by Class entries. */
+    public Set<String> getClassNames()
+    {
+        final Set<String> names = new LinkedHashSet<String>();
+        for(int i = 1; i < tags.length; i++)
+        {
+            if(tags[i] == CLASS)
+            {
+                names.add(utf8At(operands[i]));
+            }
+        }
+        return names;
+    }
+
+    /** Returns the distinct values of the String entries. */
+    public Set<String> getStrings()
+    {
+        final Set<String> values = new LinkedHashSet<String>();
+        for(int i = 1; i < tags.length; i++)
+        {
+            if(tags[i] == STRING)
+            {
+                values.add(utf8At(operands[i]));
+            }
+        }
+        return values;
+    }
+
+    /** Total length in bytes of all the Utf8 entries. */
+    public long getUtf8Bytes()
+    {
+        long total = 0;
+        for(int i = 1; i < tags.length; i++)
+        {
+            if(tags[i] == UTF8)
+            {
+                total += CodeAttribute.u2(data, operands[i]);
+            }
+        }
+        return total;
+    }
+
+    /*getUtf8() for an index already checked when the pool was parsed*/
+    private String utf8At(final int index)
+    {
+        try
+        {
+            return getUtf8(index);
+        }
+        catch(InvalidConstantPoolIndex e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Adds an estimate of the memory held by the pool and its entries. */
+    public synchronized void addFootprint(final Footprint fp)
+    {
+        fp.addObject(Footprint.Category.CONSTANT_POOL, this);
+        fp.addArray(Footprint.Category.CONSTANT_POOL, tags);
+        fp.addArray(Footprint.Category.CONSTANT_POOL, operands);
+        fp.addArray(Footprint.Category.CONSTANT_POOL, data);
+        fp.addArray(Footprint.Category.CONSTANT_POOL, strings);
+        fp.addArray(Footprint.Category.CONSTANT_POOL, entries);
+        for(String s: strings)
+        {
+            fp.addString(Footprint.Category.STRINGS, s);
+        }
+        for(CPEntry entry: entries)
+        {
+            if(entry != null)
+            {
+                entry.addFootprint(fp);
+            }
+        }
     }
 
     /** Returns a formatted String representation of the constant pool. */
@@ -72,25 +397,28 @@ public class ConstantPool
         s.append("Index  Entry type          Entry values\n");
         s.append(Grosstab.str(tabs));
         s.append("---------------------------------------\n");
-        for(int i = 1; i < entries.length; i++)
+        for(int i = 1; i < tags.length; i++)
         {
-            if(entries[i] != null)
+            if(tags[i] != 0)
             {
+                final CPEntry entry = getEntryUnchecked(i);
                 s.append(Grosstab.str(tabs));
                 s.append(String.format("0x%02X   %-18s  %s\n",
-                    i, entries[i].getTagString(), entries[i].toString(0)));
+                    i, entry.getTagString(), entry.toString(0)));
             }
         }
         return s.toString();
     }
-}
 
-/**
- * Thrown when an invalid index into the constant pool is given. That is,
- * index is zero (or negative), greater than the index of the last entry, or
- * represents the (unused) entry following a Long or Double.
- */
-class InvalidConstantPoolIndex extends ClassFileParserException
-{
-    public InvalidConstantPoolIndex(final String msg) { super(msg); }
+    private CPEntry getEntryUnchecked(final int index)
+    {
+        try
+        {
+            return getEntry(index);
+        }
+        catch(InvalidConstantPoolIndex e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
 }
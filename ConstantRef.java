@@ -0,0 +1,53 @@
+import java.io.*;
+
+/**
+ * Abstract superclass for the three CONSTANT_xxxref entry types. These
+ * contain references to a ConstantClass entry and to a ConstantNameAndType
+ * entry (both just raw indexes until resolveReferences() is called).
+ *
+ * @author David Cooper
+ */
+abstract class ConstantRef extends CPEntry
+{
+    private final int classIndex;
+    private final int nameAndTypeIndex;
+
+    private ConstantClass classEntry = null;
+    private ConstantNameAndType nameAndTypeEntry = null;
+
+    public ConstantRef(final DataInputStream dis) throws IOException
+    {
+        this.classIndex = dis.readUnsignedShort();
+        this.nameAndTypeIndex = dis.readUnsignedShort();
+    }
+
+    public void resolveReferences(final ConstantPool cp)
+        throws InvalidConstantPoolIndex
+    {
+        this.classEntry = (ConstantClass)cp.getEntry(classIndex);
+        this.nameAndTypeEntry =
+            (ConstantNameAndType)cp.getEntry(nameAndTypeIndex);
+    }
+
+    public int getClassIndex()          { return classIndex; }
+    public int getNameAndTypeIndex()    { return nameAndTypeIndex; }
+
+    public String getClassName()        { return classEntry.getName(); }
+    public String getName()             { return nameAndTypeEntry.getName(); }
+    public String getType()             { return nameAndTypeEntry.getType(); }
+
+    public String getValues()
+    {
+        return String.format("class_index=0x%02x, name_and_type_index=0x%02x",
+            classIndex, nameAndTypeIndex);
+    }
+
+    /*if name resolved, print it.  else print getValues()*/
+    public String toString(final int tabs){
+        final StringBuffer s = new StringBuffer(Grosstab.str(tabs)); 
+        s.append((classEntry == null || nameAndTypeEntry == null) ? getValues() : 
+        ("Class: " + getClassName()));
+        s.append((nameAndTypeEntry == null) ? "" : nameAndTypeEntry.toString(tabs));
+        return s.toString();
+    }
+}
@@ -0,0 +1,38 @@
+import java.io.*;
+
+/**
+ * Represents a CONSTANT_Utf8 entry (tag == 1).
+ *
+ * @author David Cooper
+ */
+class ConstantUtf8 extends CPEntry
+{
+    final private String bytes;
+
+    public ConstantUtf8(final DataInputStream dis) throws IOException
+    {
+        final int length = dis.readUnsignedShort();
+        final byte[] b = new byte[length];
+        dis.readFully(b);
+        this.bytes = new String(b);
+    }
+
+    /*For a string ConstantPool has already decoded*/
+    public ConstantUtf8(final String bytes)
+    {
+        this.bytes = bytes;
+    }
+
+    public void addFootprint(final Footprint fp)
+    {
+        super.addFootprint(fp);
+        fp.addString(Footprint.Category.STRINGS, bytes);
+    }
+
+    public String getBytes()     { return bytes; }
+    public String getTagString() { return "Utf8"; }
+    public String getValues()
+    {
+        return bytes.replace("\n","\\n");
+    }
+}
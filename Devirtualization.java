@@ -0,0 +1,95 @@
+import java.util.*;
+
+/**
+ * Finds classes and methods that could be declared final because nothing
+ * in the parsed classes extends or overrides them. Marking them final lets
+ * the JIT bind calls statically instead of relying on class hierarchy
+ * analysis, which has to deoptimise if a subclass turns up later.
+ *
+ * Rather than asking findOverridesForMethod() about every method (which
+ * walks the whole subtree each time), each class pushes its own methods up
+ * to its ancestors once, so the cost is roughly the number of methods times
+ * the depth of the hierarchy.
+ *
+ * @author Luke Mercuri
+ */
+public class Devirtualization
+{
+    private final List<ClassFile> finalClasses = new ArrayList<ClassFile>();
+    private final List<ClassFile> methodClasses = new ArrayList<ClassFile>();
+    private final List<MethodInfo> finalMethods = new ArrayList<MethodInfo>();
+    private int numClasses = 0;
+    private int numMethods = 0;
+
+    /*The hierarchy must already have been resolved*/
+    public Devirtualization(final ClassFile[] classes)
+    {
+        final Map<String, ClassFile> byName = new HashMap<String, ClassFile>();
+        for(ClassFile cf: classes){
+            byName.put(cf.getName(), cf);
+        }
+
+        //ancestor name + "." + method name + parameters, for every override
+        final Set<String> overridden = new HashSet<String>();
+
+        for(ClassFile cf: classes){
+            final Set<String> ancestors = cf.findAncestors(byName);
+            if(ancestors.isEmpty()){
+                continue;
+            }
+
+            for(int m = 0; m < cf.methodCount(); m++){
+                final MethodInfo method = cf.getMethod(m);
+                if(method.getCodeSize() == 0 || method.checkAccess(Flag.ACC_STATIC) ||
+                    method.checkAccess(Flag.ACC_PRIVATE) || method.getName().startsWith("<")){
+                    continue;
+                }
+
+                final String signature = method.getSignature();
+                for(String ancestor: ancestors){
+                    overridden.add(ancestor + signature);
+                }
+            }
+        }
+
+        for(ClassFile cf: classes){
+            if(cf.isInterface() || cf.checkAccess(Flag.ACC_FINAL)){
+                continue;
+            }
+            numClasses++;
+
+            //no subclasses, so every method in it is final already
+            if(cf.childCount() == 0 && !cf.checkAccess(Flag.ACC_ABSTRACT)){
+                finalClasses.add(cf);
+                continue;
+            }
+
+            for(int m = 0; m < cf.methodCount(); m++){
+                final MethodInfo method = cf.getMethod(m);
+                if(method.checkAccess(Flag.ACC_FINAL) || method.checkAccess(Flag.ACC_PRIVATE) ||
+                    method.checkAccess(Flag.ACC_STATIC) || method.checkAccess(Flag.ACC_ABSTRACT) ||
+                    method.getName().startsWith("<")){
+                    continue;
+                }
+                numMethods++;
+
+                if(!overridden.contains(cf.getName() + method.getSignature())){
+                    methodClasses.add(cf);
+                    finalMethods.add(method);
+                }
+            }
+        }
+    }
+
+    /*Concrete, non-final classes with no parsed subclasses*/
+    public List<ClassFile> getFinalClasses(){ return finalClasses; }
+
+    /*Overridable methods nothing overrides, in classes that do have subclasses*/
+    public int finalMethodCount(){ return finalMethods.size(); }
+    public ClassFile getFinalMethodClass(final int index){ return methodClasses.get(index); }
+    public MethodInfo getFinalMethod(final int index){ return finalMethods.get(index); }
+
+    /*Number of non-final classes, and overridable methods in subclassed classes, checked*/
+    public int classesChecked(){ return numClasses; }
+    public int methodsChecked(){ return numMethods; }
+}
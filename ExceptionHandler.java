@@ -9,7 +9,8 @@ public class ExceptionHandler {
 	private final int startPC;
 	private final int endPC;
 	private final int handlerPC;
-	private final CPEntry catchType;
+	/*Constant pool index of the Class caught, zero to catch everything*/
+	private final int catchType;
 
 	public ExceptionHandler(final DataInputStream dis, final ConstantPool cp) throws IOException,
 															InvalidConstantPoolIndex
@@ -17,6 +18,20 @@ public class ExceptionHandler {
 		startPC = dis.readUnsignedShort();
 		endPC = dis.readUnsignedShort();
 		handlerPC = dis.readUnsignedShort();
-		catchType = cp.getEntry(dis.readUnsignedShort());
+		//zero means catch everything (used for finally blocks)
+		catchType = dis.readUnsignedShort();
+		if(catchType != 0 && cp.getTag(catchType) != ConstantPool.CLASS)
+		{
+			throw new InvalidConstantPoolIndex(String.format(
+				"Invalid constant pool index: %d (catch type is not a Class)", catchType));
+		}
 	}
+
+	/*Whether an exception thrown at pc is handled here (whatever its type)*/
+	public boolean covers(final int pc)
+	{
+		return pc >= startPC && pc < endPC;
+	}
+
+	public int getHandlerPC(){ return handlerPC; }
 }
@@ -0,0 +1,212 @@
+import java.util.*;
+
+/**
+ * Looks for classes whose frequently written fields are likely to share a
+ * cache line, so that threads writing different fields keep invalidating
+ * each other's caches. A field counts as hot if it is volatile or if it is
+ * written (putfield) from at least HOT_WRITES places outside constructors.
+ * Hot fields are chained into groups in the estimated layout, each field
+ * joining the group of the one before it if less than a cache line after
+ * it, so a group as a whole can span more than one line. Any group of two
+ * or more is reported at the class declaring its fields: a subclass is
+ * only flagged for groups involving fields of its own, with the inherited
+ * fields near them. Fields (or classes) marked @Contended are left out,
+ * since the JVM pads those itself.
+ *
+ * @author Luke Mercuri
+ */
+public class FalseSharing
+{
+    public static final int CACHE_LINE = 64;
+    public static final int HOT_WRITES = 2;
+
+    private static final String CONTENDED[] = {
+        "Ljdk/internal/vm/annotation/Contended;", "Lsun/misc/Contended;"};
+
+    private final Map<String, ClassFile> byName = new HashMap<String, ClassFile>();
+
+    /*putfield sites per "declaring class.field name"*/
+    private final Map<String, Integer> writes = new HashMap<String, Integer>();
+
+    private final List<ClassLayout> flagged = new ArrayList<ClassLayout>();
+    private final List<List<IntList>> flaggedGroups = new ArrayList<List<IntList>>();
+
+    public FalseSharing(final ClassFile[] classes, final ObjectLayout objectLayout)
+    {
+        for(ClassFile cf: classes){
+            byName.put(cf.getName(), cf);
+        }
+
+        countWrites(classes);
+
+        for(ClassFile cf: classes){
+            if(cf.isInterface() || isContended(cf)){
+                continue;
+            }
+
+            final ClassLayout layout = objectLayout.layoutOf(cf);
+
+            //hot fields in offset order
+            final List<Integer> hot = new ArrayList<Integer>();
+            for(int i = 0; i < layout.fieldCount(); i++){
+                if(isHot(layout, i) && !isContended(layout.getFieldOwner(i)) &&
+                    !isContended(layout.getField(i))){
+                    hot.add(i);
+                }
+            }
+            Collections.sort(hot, new Comparator<Integer>(){
+                public int compare(final Integer a, final Integer b){
+                    return layout.getOffset(a) - layout.getOffset(b);
+                }
+            });
+
+            //chain together hot fields less than a cache line apart
+            final List<IntList> groups = new ArrayList<IntList>();
+            IntList group = null;
+            for(int i = 0; i < hot.size(); i++){
+                if(group == null || 
+                    layout.getOffset(hot.get(i)) - layout.getOffset(hot.get(i - 1)) >= CACHE_LINE){
+                    group = new IntList(4);
+                    groups.add(group);
+                }
+                group.add(hot.get(i));
+            }
+
+            final List<IntList> shared = new ArrayList<IntList>();
+            for(IntList g: groups){
+                final IntList own = ownShare(layout, cf, g);
+                if(own.size() > 1){
+                    shared.add(own);
+                }
+            }
+
+            if(!shared.isEmpty()){
+                flagged.add(layout);
+                flaggedGroups.add(shared);
+            }
+        }
+    }
+
+    /*
+    The part of a group this class is responsible for: its own fields,
+    plus inherited ones within a cache line of one of them.  Groups
+    made up only of inherited fields are left to the declaring class,
+    so a risk in a superclass isn't reported again for every subclass
+    */
+    private static IntList ownShare(final ClassLayout layout, final ClassFile cf, final IntList group)
+    {
+        final IntList own = new IntList(group.size());
+
+        for(int i = 0; i < group.size(); i++){
+            final int field = group.get(i);
+            boolean keep = isOwn(layout, cf, field);
+
+            for(int j = 0; j < group.size() && !keep; j++){
+                keep = isOwn(layout, cf, group.get(j)) &&
+                    Math.abs(layout.getOffset(group.get(j)) - layout.getOffset(field)) < CACHE_LINE;
+            }
+
+            if(keep){
+                own.add(field);
+            }
+        }
+
+        //nothing declared here, so nothing new to report
+        boolean anyOwn = false;
+        for(int i = 0; i < own.size() && !anyOwn; i++){
+            anyOwn = isOwn(layout, cf, own.get(i));
+        }
+        return anyOwn ? own : new IntList(0);
+    }
+
+    private static boolean isOwn(final ClassLayout layout, final ClassFile cf, final int index)
+    {
+        return layout.getFieldOwner(index).getName().equals(cf.getName());
+    }
+
+    /*Tally putfield sites, attributing each to the class declaring the field*/
+    private void countWrites(final ClassFile[] classes)
+    {
+        for(ClassFile cf: classes){
+            for(int m = 0; m < cf.methodCount(); m++){
+                final MethodInfo method = cf.getMethod(m);
+                final CodeAttribute code = method.getCode();
+                if(code == null || "<init>".equals(method.getName())){
+                    continue;
+                }
+
+                for(int pc: code.findInstructions(Opcode.PUTFIELD)){
+                    try{
+                        final ConstantRef ref = cf.getFieldRefFromCPIndex(code.getIndexOperand(pc));
+                        final String key = declaringClass(ref.getClassName(), ref.getName()) + 
+                            "." + ref.getName();
+                        final Integer count = writes.get(key);
+                        writes.put(key, count == null ? 1 : count + 1);
+                    }
+                    catch(InvalidConstantPoolIndex e){
+                        System.out.println(e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    /*Walk up the parsed superclasses to the one declaring the field*/
+    private String declaringClass(final String owner, final String fieldName)
+    {
+        ClassFile cf = byName.get(owner);
+
+        while(cf != null)
+        {
+            for(int i = 0; i < cf.fieldCount(); i++){
+                if(cf.getField(i).getName().equals(fieldName)){
+                    return cf.getName();
+                }
+            }
+            cf = byName.get(cf.getSuperName());
+        }
+
+        return owner;
+    }
+
+    private boolean isHot(final ClassLayout layout, final int index)
+    {
+        //on a field this bit means volatile
+        return layout.getField(index).checkAccess(Flag.ACC_VOLATILE_OR_BRIDGE) ||
+            getWrites(layout, index) >= HOT_WRITES;
+    }
+
+    private static boolean isContended(final ClassFile cf)
+    {
+        for(String type: CONTENDED){
+            if(cf.hasAnnotation(type)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isContended(final FieldInfo field)
+    {
+        for(String type: CONTENDED){
+            if(field.hasAnnotation(type)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*Number of putfield sites (outside constructors) writing a field of a layout*/
+    public int getWrites(final ClassLayout layout, final int index)
+    {
+        final Integer count = writes.get(layout.getFieldOwner(index).getName() + 
+            "." + layout.getField(index).getName());
+        return count == null ? 0 : count;
+    }
+
+    public int flaggedCount(){ return flagged.size(); }
+    public ClassLayout getFlagged(final int index){ return flagged.get(index); }
+
+    /*Groups of hot field indexes (into the layout) sharing a cache line*/
+    public List<IntList> getSharedGroups(final int index){ return flaggedGroups.get(index); }
+}
@@ -13,9 +13,9 @@ import java.io.*;
 @SuppressWarnings("PMD.UnusedPrivateField")
 
 
-/*This project does not actually make any use
-whatsoever of the fields but I started implimenting 
-them anyway before I realised how little spare time I had
+/*The original -[m|c|o] options do not make any use
+whatsoever of the fields, they are only used to
+estimate object layouts (see ObjectLayout)
 */
 public class FieldInfo
 {
@@ -31,8 +31,8 @@ public class FieldInfo
                                                      CodeParsingException
     {
         accessFlags = new AccessFlags(dis.readUnsignedShort());
-        name = ((ConstantUtf8)cp.getEntry(dis.readUnsignedShort())).getBytes();
-        descriptor = ((ConstantUtf8)cp.getEntry(dis.readUnsignedShort())).getBytes();
+        name = cp.getUtf8(dis.readUnsignedShort());
+        descriptor = cp.getUtf8(dis.readUnsignedShort());
         attributes = new AttributeInfo[dis.readUnsignedShort()];
 
         for(int i = 0; i < attributes.length; i++){
@@ -44,6 +44,35 @@ public class FieldInfo
     public String getName(){ return name; }
     public String getDescriptor(){ return descriptor; }
     public AttributeInfo getAttribute(final int index){ return attributes[index]; }
+    public int attributeCount(){ return attributes.length; }
+
+    /*Whether this field carries an annotation of the given type*/
+    public boolean hasAnnotation(final String type){
+        for(AttributeInfo attribute: attributes){
+            if(attribute instanceof AnnotationsAttribute && 
+                ((AnnotationsAttribute)attribute).hasType(type)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*Poll whether this field has a particular access flag set*/
+    public boolean checkAccess(final Flag flag){
+        return accessFlags.checkAccess(flag);
+    }
+
+    /*Estimate of the memory held by this field and its attributes*/
+    public void addFootprint(final Footprint fp){
+        fp.addObject(Footprint.Category.STRUCTURE, this);
+        accessFlags.addFootprint(fp);
+        fp.addString(Footprint.Category.STRINGS, name);
+        fp.addString(Footprint.Category.STRINGS, descriptor);
+        fp.addArray(Footprint.Category.STRUCTURE, attributes);
+        for(AttributeInfo attribute: attributes){
+            attribute.addFootprint(fp);
+        }
+    }
 
     public String toString(final int tabs)
     {
@@ -0,0 +1,184 @@
+import java.lang.reflect.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Estimates how much heap a parsed ClassFile keeps alive, split into a few
+ * broad categories. Each part of the model adds itself (and whatever it
+ * owns) through an addFootprint() method, so this class only has to know
+ * how big a given object, array or String is.
+ *
+ * Sizes assume a 64-bit HotSpot JVM with compressed oops and compressed
+ * class pointers (12 byte object headers, 16 byte array headers, 4 byte
+ * references, 8 byte alignment) and compact Strings. Objects reachable more
+ * than once (such as a Utf8 entry's String reused as a method name) are
+ * only counted the first time.
+ *
+ * @author Luke Mercuri
+ */
+public class Footprint
+{
+    public enum Category
+    {
+        CONSTANT_POOL("Constant pool entries"),
+        INSTRUCTIONS("Instruction lists"),
+        ATTRIBUTES("Attribute bytes"),
+        STRINGS("Strings"),
+        STRUCTURE("Other structure");
+
+        private final String label;
+
+        private Category(final String label){ this.label = label; }
+
+        public String getLabel(){ return label; }
+    }
+
+    public static final int OBJECT_HEADER = 12;
+    public static final int ARRAY_HEADER = 16;
+    public static final int REFERENCE = 4;
+    public static final int ALIGNMENT = 8;
+
+    /*Shallow instance sizes, worked out once per class*/
+    private static final ConcurrentMap<Class<?>, Long> SHALLOW_SIZES =
+        new ConcurrentHashMap<Class<?>, Long>();
+
+    private final long bytes[] = new long[Category.values().length];
+    private final Set<Object> seen =
+        Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+
+    /*Estimate everything retained by a single parsed class*/
+    public static Footprint of(final ClassFile cf)
+    {
+        final Footprint fp = new Footprint();
+        cf.addFootprint(fp);
+        return fp;
+    }
+
+    public long get(final Category category){ return bytes[category.ordinal()]; }
+
+    public long total()
+    {
+        long total = 0;
+        for(long b: bytes){
+            total += b;
+        }
+        return total;
+    }
+
+    /*Accumulate another estimate into this one (used for corpus totals)*/
+    public void add(final Footprint other)
+    {
+        for(int i = 0; i < bytes.length; i++){
+            bytes[i] += other.bytes[i];
+        }
+    }
+
+    /*Count an object's own fields, but not anything they reference*/
+    public void addObject(final Category category, final Object o)
+    {
+        if(o != null && seen.add(o))
+        {
+            bytes[category.ordinal()] += shallowSize(o.getClass());
+        }
+    }
+
+    /*Count an array of primitives or references (not the referenced objects)*/
+    public void addArray(final Category category, final Object array)
+    {
+        if(array != null && seen.add(array))
+        {
+            final Class<?> type = array.getClass().getComponentType();
+            bytes[category.ordinal()] += align(ARRAY_HEADER +
+                (long)fieldSize(type) * Array.getLength(array));
+        }
+    }
+
+    /*Count a String and its backing byte[]*/
+    public void addString(final Category category, final String s)
+    {
+        if(s != null && seen.add(s))
+        {
+            boolean latin1 = true;
+            for(int i = 0; i < s.length() && latin1; i++){
+                latin1 = s.charAt(i) < 256;
+            }
+
+            bytes[category.ordinal()] += shallowSize(String.class) +
+                align(ARRAY_HEADER + (long)s.length() * (latin1 ? 1 : 2));
+        }
+    }
+
+    /*Count an ArrayList and its backing array, assuming it holds 'size' slots*/
+    public void addList(final Category category, final List<?> list)
+    {
+        if(list != null && seen.add(list))
+        {
+            bytes[category.ordinal()] += shallowSize(list.getClass()) +
+                align(ARRAY_HEADER + (long)REFERENCE * list.size());
+        }
+    }
+
+    /*Count a HashSet, its HashMap, table and one node per element*/
+    public void addSet(final Category category, final Set<?> set)
+    {
+        if(set != null && seen.add(set))
+        {
+            int capacity = 16;
+            while(capacity * 3 / 4 < set.size()){
+                capacity *= 2;
+            }
+
+            bytes[category.ordinal()] += shallowSize(set.getClass()) +
+                shallowSize(HashMap.class) +
+                align(ARRAY_HEADER + (long)REFERENCE * capacity) +
+                (long)set.size() * align(OBJECT_HEADER + 4 + 3 * REFERENCE);
+        }
+    }
+
+
+    public static long align(final long size)
+    {
+        return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    /*Bytes taken up by a single field or array element of the given type*/
+    public static int fieldSize(final Class<?> type)
+    {
+        int size = REFERENCE;
+
+        if(type == long.class || type == double.class){
+            size = 8;
+        } else if(type == int.class || type == float.class){
+            size = 4;
+        } else if(type == short.class || type == char.class){
+            size = 2;
+        } else if(type == byte.class || type == boolean.class){
+            size = 1;
+        }
+
+        return size;
+    }
+
+    /*Header plus every instance field declared by the class and its supers*/
+    public static long shallowSize(final Class<?> type)
+    {
+        Long size = SHALLOW_SIZES.get(type);
+
+        if(size == null)
+        {
+            long fieldBytes = 0;
+            for(Class<?> c = type; c != null; c = c.getSuperclass()){
+                for(Field field: c.getDeclaredFields()){
+                    if(!Modifier.isStatic(field.getModifiers())){
+                        fieldBytes += fieldSize(field.getType());
+                    }
+                }
+            }
+
+            size = align(OBJECT_HEADER + fieldBytes);
+            SHALLOW_SIZES.put(type, size);
+        }
+
+        return size;
+    }
+}
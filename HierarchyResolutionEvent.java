@@ -0,0 +1,16 @@
+import jdk.jfr.*;
+
+/**
+ * Java Flight Recorder event covering the resolution of parent/child links
+ * between all of the parsed classes.
+ *
+ * @author Luke Mercuri
+ */
+@Name("ParseClass.HierarchyResolution")
+@Label("Hierarchy Resolution")
+@Category({"ParseClass", "Analysis"})
+class HierarchyResolutionEvent extends Event
+{
+    @Label("Class Count")
+    int classCount;
+}
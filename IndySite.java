@@ -0,0 +1,59 @@
+/**
+ * An invokedynamic instruction and what its bootstrap method says about it.
+ *
+ * @author Luke Mercuri
+ */
+class IndySite
+{
+    public enum Kind { LAMBDA, STRING_CONCAT, OTHER }
+
+    private final int pc;
+    private final ConstantInvokeDynamic indy;
+    private final BootstrapMethod bootstrap;
+    private final Kind kind;
+
+    IndySite(final int pc, final ConstantInvokeDynamic indy, final BootstrapMethod bootstrap){
+        this.pc = pc;
+        this.indy = indy;
+        this.bootstrap = bootstrap;
+
+        final ConstantRef ref = bootstrap.getHandle().getReference();
+        final String owner = (ref == null) ? "" : ref.getClassName();
+        if("java/lang/invoke/LambdaMetafactory".equals(owner)){
+            kind = Kind.LAMBDA;
+        } else if("java/lang/invoke/StringConcatFactory".equals(owner)){
+            kind = Kind.STRING_CONCAT;
+        } else {
+            kind = Kind.OTHER;
+        }
+    }
+
+    public int getPc(){ return pc; }
+    public Kind getKind(){ return kind; }
+    public BootstrapMethod getBootstrapMethod(){ return bootstrap; }
+
+    /*Name and descriptor of the call site, eg apply(LFoo;)Ljava/util/function/Function;*/
+    public String getName(){ return indy.getName(); }
+    public String getType(){ return indy.getType(); }
+
+    /*A lambda or concatenation taking arguments creates a new object at
+    every execution, where one with none is linked to a constant*/
+    public boolean isCapturing(){ return !getType().startsWith("()"); }
+
+    /*The method implementing a lambda (the second metafactory argument), or null*/
+    public ConstantRef getImplementation(){
+        if(kind != Kind.LAMBDA || bootstrap.argumentCount() < 2 ||
+            !(bootstrap.getArgument(1) instanceof ConstantMethodHandle)){
+            return null;
+        }
+        return ((ConstantMethodHandle)bootstrap.getArgument(1)).getReference();
+    }
+
+    /*Single line description in the style of the -c report*/
+    public String toString(){
+        final ConstantRef impl = getImplementation();
+        return String.format("invokedynamic %s%s -> %s", getName(), getType(),
+            (impl == null) ? bootstrap.getHandleName().replace("/", ".") :
+            (impl.getClassName() + "." + impl.getName()).replace("/", ".") + impl.getType());
+    }
+}
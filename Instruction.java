@@ -66,6 +66,17 @@ public class Instruction
         return Arrays.copyOf(extraBytes, extraBytes.length);
     }
 
+    /**
+     * Adds an estimate of the memory held by this instruction. The labels
+     * themselves are String literals shared by every instruction.
+     */
+    public void addFootprint(final Footprint fp)
+    {
+        fp.addObject(Footprint.Category.INSTRUCTIONS, this);
+        fp.addArray(Footprint.Category.INSTRUCTIONS, extraBytes);
+        fp.addArray(Footprint.Category.INSTRUCTIONS, byteLabels);
+    }
+
     /** Returns a formatted String representation of this instruction. */
     public String toString(final int tabs)
     {
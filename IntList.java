@@ -0,0 +1,63 @@
+import java.util.*;
+
+/**
+ * A growable list of primitive ints, used while building the int-indexed
+ * analysis structures so that millions of entries don't each need an
+ * Integer object.
+ *
+ * @author Luke Mercuri
+ */
+public class IntList
+{
+    private int values[];
+    private int size = 0;
+
+    public IntList()
+    {
+        this(16);
+    }
+
+    public IntList(final int capacity)
+    {
+        values = new int[Math.max(capacity, 1)];
+    }
+
+    public void add(final int value)
+    {
+        if(size == values.length)
+        {
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+        values[size++] = value;
+    }
+
+    public int get(final int index)
+    {
+        if(index >= size)
+        {
+            throw new IndexOutOfBoundsException(
+                String.format("Index: %d, Size: %d", index, size));
+        }
+        return values[index];
+    }
+
+    /*Remove and return the last value, so the list can be used as a stack*/
+    public int removeLast()
+    {
+        if(size == 0)
+        {
+            throw new IndexOutOfBoundsException("Index: -1, Size: 0");
+        }
+        return values[--size];
+    }
+
+    public int size(){ return size; }
+
+    public void clear(){ size = 0; }
+
+    /*Copy of the contents, trimmed to size*/
+    public int[] toArray()
+    {
+        return Arrays.copyOf(values, size);
+    }
+}
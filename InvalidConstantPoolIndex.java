@@ -0,0 +1,11 @@
+/**
+ * Thrown when an invalid index into the constant pool is given. That is,
+ * index is zero (or negative), greater than the index of the last entry, or
+ * represents the (unused) entry following a Long or Double.
+ *
+ * @author David Cooper
+ */
+class InvalidConstantPoolIndex extends ClassFileParserException
+{
+    public InvalidConstantPoolIndex(final String msg) { super(msg); }
+}
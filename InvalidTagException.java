@@ -0,0 +1,10 @@
+/**
+ * Thrown when an unknown tag value is encountered (i.e. one that does not
+ * indicate a known constant pool entry type.)
+ *
+ * @author David Cooper
+ */
+class InvalidTagException extends ClassFileParserException
+{
+    public InvalidTagException(final String msg) { super(msg); }
+}
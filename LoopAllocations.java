@@ -0,0 +1,17 @@
+/**
+ * Allocation sites found inside loops by CodeAttribute.findLoopAllocations().
+ *
+ * @author Luke Mercuri
+ */
+class LoopAllocations
+{
+    int objects = 0;
+    int arrays = 0;
+    int boxing = 0;
+
+    public int getObjects(){ return objects; }
+    public int getArrays(){ return arrays; }
+    public int getBoxing(){ return boxing; }
+
+    public int total(){ return objects + arrays + boxing; }
+}
@@ -0,0 +1,385 @@
+import java.io.*;
+import java.lang.management.*;
+import java.util.*;
+
+/**
+ * End-to-end benchmark runner for the ParseClass report modes.
+ *
+ * Each combination of mode, corpus size and thread count is run in a fresh
+ * JVM so that wall time, CPU time, GC time and peak RSS are not polluted by
+ * earlier runs. Results are written as CSV and can be compared against a
+ * previously stored results file, failing when any run regresses by more
+ * than a given percentage.
+ *
+ * @author Luke Mercuri
+ */
+public class MacroBenchmark
+{
+    private static final String HEADER =
+        "mode,classes,threads,wall_ms,cpu_ms,gc_ms,peak_rss_kb";
+
+    /*Defaults, all overridable from the command line*/
+    private String corpus = null;
+    private String[] modes = {"m", "c", "o", "v"};
+    private int[] sizes = {1000, 10000, 100000};
+    private int[] threadCounts = {1, 2, 4};
+    private int runs = 1;
+    private String outFile = "benchmark.csv";
+    private String baselineFile = null;
+    private double threshold = 10.0;
+    private final List<String> jvmArgs = new ArrayList<String>();
+
+    public static void main(final String[] args) throws Exception
+    {
+        /*A single measured run, launched by the harness below*/
+        if(args.length == 4 && "--child".equals(args[0]))
+        {
+            runChild(args[1].charAt(0), Integer.parseInt(args[2]), args[3]);
+            return;
+        }
+
+        final MacroBenchmark bench = new MacroBenchmark();
+        if(!bench.parseArgs(args))
+        {
+            usage();
+            System.exit(2);
+        }
+
+        System.exit(bench.run() ? 0 : 1);
+    }
+
+
+    private boolean parseArgs(final String[] args)
+    {
+        boolean valid = true;
+
+        try
+        {
+            for(String arg: args)
+            {
+                final String value = arg.substring(arg.indexOf('=') + 1);
+
+                if(arg.startsWith("--corpus=")){
+                    corpus = value;
+                } else if(arg.startsWith("--modes=")){
+                    modes = value.split(",");
+                } else if(arg.startsWith("--sizes=")){
+                    sizes = parseInts(value);
+                } else if(arg.startsWith("--threads=")){
+                    threadCounts = parseInts(value);
+                } else if(arg.startsWith("--runs=")){
+                    runs = Integer.parseInt(value);
+                } else if(arg.startsWith("--out=")){
+                    outFile = value;
+                } else if(arg.startsWith("--baseline=")){
+                    baselineFile = value;
+                } else if(arg.startsWith("--threshold=")){
+                    threshold = Double.parseDouble(value);
+                } else if(arg.startsWith("--jvm-arg=")){
+                    jvmArgs.add(value);
+                } else {
+                    valid = false;
+                }
+            }
+        }
+        catch(NumberFormatException e)
+        {
+            valid = false;
+        }
+
+        return valid && corpus != null && runs > 0;
+    }
+
+    private static int[] parseInts(final String list)
+    {
+        final String[] parts = list.split(",");
+        final int[] values = new int[parts.length];
+        for(int i = 0; i < parts.length; i++){
+            values[i] = Integer.parseInt(parts[i].trim());
+        }
+        return values;
+    }
+
+
+    /*Run every configuration, returns false if any run regressed*/
+    private boolean run() throws IOException, InterruptedException
+    {
+        final List<String> corpusFiles = new ArrayList<String>();
+        collectClassFiles(new File(corpus), corpusFiles);
+        Collections.sort(corpusFiles);
+
+        if(corpusFiles.isEmpty())
+        {
+            System.out.printf("No class files found in \"%s\"\n", corpus);
+            return false;
+        }
+
+        final Map<String, Double> baseline = (baselineFile == null) ?
+            new HashMap<String, Double>() : loadBaseline(baselineFile);
+        final List<String> rows = new ArrayList<String>();
+        boolean passed = true;
+
+        for(String mode: modes){
+            for(int size: sizes){
+                final File list = writeFileList(corpusFiles, size);
+
+                try
+                {
+                    for(int t: threadCounts){
+                        /*Keep the fastest of the repeated runs*/
+                        long[] best = null;
+                        for(int r = 0; r < runs; r++){
+                            final long[] result = launchChild(mode, t, list);
+                            if(best == null || result[0] < best[0]){
+                                best = result;
+                            }
+                        }
+
+                        final String key = mode + "," + size + "," + t;
+                        final String row = String.format("%s,%d,%d,%d,%d",
+                            key, best[0], best[1], best[2], best[3]);
+                        rows.add(row);
+                        System.out.println(row);
+
+                        /*Compare wall time against the stored run*/
+                        final Double previous = baseline.get(key);
+                        if(previous != null &&
+                            best[0] > previous * (1.0 + threshold / 100.0))
+                        {
+                            System.out.printf("REGRESSION %s: %d ms vs baseline %.0f ms (+%.1f%%)\n",
+                                key, best[0], previous,
+                                100.0 * (best[0] - previous) / previous);
+                            passed = false;
+                        }
+                    }
+                }
+                finally
+                {
+                    list.delete();
+                }
+            }
+        }
+
+        final PrintWriter out = new PrintWriter(new FileWriter(outFile));
+        try
+        {
+            out.println(HEADER);
+            for(String row: rows){
+                out.println(row);
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+
+        return passed;
+    }
+
+
+    /*Recursively find every .class file below a directory*/
+    private static void collectClassFiles(final File file, final List<String> files)
+    {
+        if(file.isDirectory())
+        {
+            final File[] contents = file.listFiles();
+            if(contents != null)
+            {
+                for(File f: contents){
+                    collectClassFiles(f, files);
+                }
+            }
+        }
+        else if(file.getName().endsWith(".class"))
+        {
+            files.add(file.getPath());
+        }
+    }
+
+    /*
+    Write the first 'size' files of the corpus to a temporary list,
+    cycling through the corpus again if it is smaller than requested
+    */
+    private static File writeFileList(final List<String> corpusFiles, final int size) throws IOException
+    {
+        final File list = File.createTempFile("corpus", ".txt");
+        final PrintWriter out = new PrintWriter(new FileWriter(list));
+        try
+        {
+            for(int i = 0; i < size; i++){
+                out.println(corpusFiles.get(i % corpusFiles.size()));
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+        return list;
+    }
+
+    private static Map<String, Double> loadBaseline(final String fileName) throws IOException
+    {
+        final Map<String, Double> baseline = new HashMap<String, Double>();
+        final BufferedReader in = new BufferedReader(new FileReader(fileName));
+        try
+        {
+            String line;
+            while((line = in.readLine()) != null)
+            {
+                final String[] cols = line.split(",");
+                if(cols.length >= 4 && !HEADER.equals(line))
+                {
+                    baseline.put(cols[0] + "," + cols[1] + "," + cols[2],
+                        Double.valueOf(cols[3]));
+                }
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        return baseline;
+    }
+
+
+    /*Launch a fresh JVM for one measurement and read back its result line*/
+    private long[] launchChild(final String mode, final int numThreads, final File list)
+        throws IOException, InterruptedException
+    {
+        final List<String> command = new ArrayList<String>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" +
+            File.separator + "java");
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("MacroBenchmark");
+        command.add("--child");
+        command.add(mode);
+        command.add(Integer.toString(numThreads));
+        command.add(list.getPath());
+
+        final Process process = new ProcessBuilder(command)
+            .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+
+        String result = null;
+        final BufferedReader in = new BufferedReader(
+            new InputStreamReader(process.getInputStream()));
+        try
+        {
+            String line;
+            while((line = in.readLine()) != null)
+            {
+                result = line;
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+
+        if(process.waitFor() != 0 || result == null)
+        {
+            throw new IOException(String.format(
+                "Benchmark run failed for -%s with %d threads", mode, numThreads));
+        }
+
+        final String[] cols = result.split(",");
+        final long[] values = new long[cols.length];
+        for(int i = 0; i < cols.length; i++){
+            values[i] = Long.parseLong(cols[i]);
+        }
+        return values;
+    }
+
+
+    /*
+    Runs inside the child JVM: parse, resolve and report exactly as
+    ParseClass does, with the report itself sent nowhere
+    */
+    private static void runChild(final char mode, final int numThreads, final String listFile)
+        throws IOException
+    {
+        final List<String> files = new ArrayList<String>();
+        final BufferedReader in = new BufferedReader(new FileReader(listFile));
+        try
+        {
+            String line;
+            while((line = in.readLine()) != null)
+            {
+                files.add(line);
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+
+        final PrintStream results = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        final com.sun.management.OperatingSystemMXBean os =
+            (com.sun.management.OperatingSystemMXBean)ManagementFactory.getOperatingSystemMXBean();
+        final long startCpu = os.getProcessCpuTime();
+        final long startGc = gcTime();
+        final long start = System.nanoTime();
+
+        final ClassFile classes[] = ParseClass.parseClasses(
+            files.toArray(new String[files.size()]), numThreads);
+        ParseClass.resolveHierarchy(classes);
+        ParseClass.report(mode, classes);
+
+        final long wall = System.nanoTime() - start;
+        final long cpu = os.getProcessCpuTime() - startCpu;
+        final long gc = gcTime() - startGc;
+
+        System.out.flush();
+        results.printf("%d,%d,%d,%d\n",
+            wall / 1000000, cpu / 1000000, gc, peakRssKb());
+    }
+
+    /*Total milliseconds spent in GC by all collectors so far*/
+    private static long gcTime()
+    {
+        long total = 0;
+        for(GarbageCollectorMXBean gc: ManagementFactory.getGarbageCollectorMXBeans()){
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    /*Peak resident set size (VmHWM), only available on Linux*/
+    private static long peakRssKb() throws IOException
+    {
+        long peak = -1;
+        final File status = new File("/proc/self/status");
+
+        if(status.exists())
+        {
+            final BufferedReader in = new BufferedReader(new FileReader(status));
+            try
+            {
+                String line;
+                while((line = in.readLine()) != null)
+                {
+                    if(line.startsWith("VmHWM:"))
+                    {
+                        peak = Long.parseLong(line.replaceAll("[^0-9]", ""));
+                    }
+                }
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        return peak;
+    }
+
+
+    private static void usage()
+    {
+        System.out.println("Usage: java MacroBenchmark --corpus=dir [--modes=m,c,o,v] " +
+            "[--sizes=1000,10000,100000] [--threads=1,2,4] [--runs=N] [--out=file.csv] " +
+            "[--baseline=file.csv] [--threshold=percent] [--jvm-arg=arg]...");
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * A rough estimate of the metaspace a class takes up once loaded by a
+ * 64-bit HotSpot JVM, built from what the class file says about it. The
+ * per-item costs below are approximations of the sizes of HotSpot's own
+ * structures (InstanceKlass, ConstantPool, ConstantPoolCache, Method,
+ * ConstMethod and Symbol) and are only meant for ranking classes against
+ * each other and forecasting totals, not exact accounting.
+ *
+ * Symbols are shared between classes by the JVM, so counting every Utf8
+ * entry against each class that uses it overstates the total somewhat.
+ *
+ * @author Luke Mercuri
+ */
+public class MetaspaceEstimate
+{
+    /*InstanceKlass plus its fixed size tables*/
+    public static final int KLASS = 512;
+    /*vtable/itable slot*/
+    public static final int VTABLE_ENTRY = 8;
+    public static final int ITABLE_INTERFACE = 16;
+    /*ConstantPool header, then a pointer and a tag byte per slot*/
+    public static final int CONSTANT_POOL = 80;
+    public static final int CP_SLOT = 9;
+    /*ConstantPoolCache entry for each field/method/indy reference*/
+    public static final int CP_CACHE_ENTRY = 32;
+    /*Symbol header, plus one byte per character*/
+    public static final int SYMBOL = 16;
+    /*Method plus ConstMethod, before the code and tables*/
+    public static final int METHOD = 144;
+    /*Six u2 values per field in the fields array*/
+    public static final int FIELD = 12;
+
+    private final ClassFile classFile;
+    private final long klass;
+    private final long constantPool;
+    private final long symbols;
+    private final long methods;
+    private final long other;
+    private final int referencedClasses;
+
+    public MetaspaceEstimate(final ClassFile cf)
+    {
+        classFile = cf;
+        final ConstantPool cp = cf.getConstantPool();
+
+        int numVirtual = 0;
+        long methodBytes = 0;
+        for(int m = 0; m < cf.methodCount(); m++){
+            final MethodInfo method = cf.getMethod(m);
+            if(!method.checkAccess(Flag.ACC_STATIC) && !method.checkAccess(Flag.ACC_PRIVATE) &&
+                !method.getName().startsWith("<")){
+                numVirtual++;
+            }
+
+            methodBytes += METHOD;
+            for(int a = 0; a < method.attributeCount(); a++){
+                final AttributeInfo attribute = method.getAttribute(a);
+                methodBytes += (attribute instanceof CodeAttribute) ?
+                    ((CodeAttribute)attribute).getAttributeLength() : attribute.getLength();
+            }
+        }
+
+        long otherBytes = (long)cf.fieldCount() * FIELD;
+        for(int f = 0; f < cf.fieldCount(); f++){
+            final FieldInfo field = cf.getField(f);
+            for(int a = 0; a < field.attributeCount(); a++){
+                otherBytes += field.getAttribute(a).getLength();
+            }
+        }
+        for(int a = 0; a < cf.attributeCount(); a++){
+            otherBytes += cf.getAttribute(a).getLength();
+        }
+
+        final int numRefs = cp.countEntries(ConstantPool.FIELDREF) +
+            cp.countEntries(ConstantPool.METHODREF) +
+            cp.countEntries(ConstantPool.INTERFACE_METHODREF) +
+            cp.countEntries(ConstantPool.INVOKE_DYNAMIC);
+
+        klass = KLASS + (long)numVirtual * VTABLE_ENTRY + 
+            (long)cf.interfaceCount() * ITABLE_INTERFACE;
+        constantPool = CONSTANT_POOL + (long)cp.size() * CP_SLOT + (long)numRefs * CP_CACHE_ENTRY;
+        symbols = (long)cp.countEntries(ConstantPool.UTF8) * SYMBOL + cp.getUtf8Bytes();
+        methods = methodBytes;
+        other = otherBytes;
+
+        //every class other than this one
+        int numClasses = 0;
+        for(String name: cp.getClassNames()){
+            if(!name.equals(cf.getName())){
+                numClasses++;
+            }
+        }
+        referencedClasses = numClasses;
+    }
+
+    public ClassFile getClassFile(){ return classFile; }
+
+    public long getKlass(){ return klass; }
+    public long getConstantPool(){ return constantPool; }
+    public long getSymbols(){ return symbols; }
+    public long getMethods(){ return methods; }
+    public long getOther(){ return other; }
+
+    public long total(){ return klass + constantPool + symbols + methods + other; }
+
+    /*Distinct classes referred to through Class entries, excluding itself*/
+    public int getReferencedClasses(){ return referencedClasses; }
+
+    public String getPackage(){ return classFile.getPackageName(); }
+}
@@ -22,8 +22,8 @@ public class MethodInfo
                                                      CodeParsingException
     {
         accessFlags = new AccessFlags(dis.readUnsignedShort());
-        name = ((ConstantUtf8)cp.getEntry(dis.readUnsignedShort())).getBytes();
-        descriptor = ((ConstantUtf8)cp.getEntry(dis.readUnsignedShort())).getBytes();
+        name = cp.getUtf8(dis.readUnsignedShort());
+        descriptor = cp.getUtf8(dis.readUnsignedShort());
         attributes = new AttributeInfo[dis.readUnsignedShort()];
 
         for(int i = 0; i < attributes.length; i++){
@@ -34,6 +34,14 @@ public class MethodInfo
 
     public String getName(){ return name; }
     public String getDescriptor(){ return descriptor; }
+    public int getAccessMask(){ return accessFlags.getMask(); }
+
+    /*Name and parameters only, as return types may differ (see
+    ClassFile.findOverride), starting with a "." so it can follow
+    a class name to key a method and its overrides alike*/
+    public String getSignature(){
+        return "." + name + descriptor.substring(0, descriptor.indexOf(')'));
+    }
 
     //Method is defined to contain either one or zero Code attributes
     public CodeAttribute getCode(){
@@ -183,6 +191,19 @@ public class MethodInfo
     }
 
     public AttributeInfo getAttribute(final int index){ return attributes[index]; }
+    public int attributeCount(){ return attributes.length; }
+
+    /*Estimate of the memory held by this method and its attributes*/
+    public void addFootprint(final Footprint fp){
+        fp.addObject(Footprint.Category.STRUCTURE, this);
+        accessFlags.addFootprint(fp);
+        fp.addString(Footprint.Category.STRINGS, name);
+        fp.addString(Footprint.Category.STRINGS, descriptor);
+        fp.addArray(Footprint.Category.STRUCTURE, attributes);
+        for(AttributeInfo attribute: attributes){
+            attribute.addFootprint(fp);
+        }
+    }
 
     public String toString(final int tabs)
     {
@@ -0,0 +1,242 @@
+import java.util.*;
+
+/**
+ * Every method of a corpus held column by column: one primitive array per
+ * property, indexed by row, with names and descriptors interned into a
+ * SymbolTable. Aggregates are then plain loops over int arrays, which the
+ * JIT can unroll and vectorise, instead of walks over ClassFile and
+ * MethodInfo objects.
+ *
+ * Classes get ids in the order given (a class given twice keeps its first
+ * copy) and each has a package id, so results can be grouped by either.
+ *
+ * @author Luke Mercuri
+ */
+public class MethodTable
+{
+    public enum Column
+    {
+        OWNER("Class"),
+        NAME("Name"),
+        DESCRIPTOR("Descriptor"),
+        ACCESS("Access flags"),
+        CODE_LENGTH("Code length"),
+        MAX_STACK("Max stack"),
+        MAX_LOCALS("Max locals"),
+        INVOKES("Invokes");
+
+        private final String label;
+
+        private Column(final String label){ this.label = label; }
+
+        public String getLabel(){ return label; }
+    }
+
+    private final SymbolTable symbols = new SymbolTable();
+
+    /*Per class: name symbol and package id*/
+    private final int classNames[];
+    private final int classPackages[];
+    private final SymbolTable packages = new SymbolTable();
+
+    /*columns[column.ordinal()][row]*/
+    private final int columns[][];
+    private final int rows;
+
+    public MethodTable(final ClassFile[] classes)
+    {
+        final Set<String> seen = new HashSet<String>();
+        final List<ClassFile> unique = new ArrayList<ClassFile>();
+        int numMethods = 0;
+
+        for(ClassFile cf: classes){
+            if(seen.add(cf.getName())){
+                unique.add(cf);
+                numMethods += cf.methodCount();
+            }
+        }
+
+        rows = numMethods;
+        columns = new int[Column.values().length][rows];
+        classNames = new int[unique.size()];
+        classPackages = new int[unique.size()];
+
+        final Opcode invokes[] = {Opcode.INVOKEVIRTUAL, Opcode.INVOKESPECIAL, 
+            Opcode.INVOKESTATIC, Opcode.INVOKEINTERFACE, Opcode.INVOKEDYNAMIC};
+
+        int row = 0;
+        for(int id = 0; id < unique.size(); id++){
+            final ClassFile cf = unique.get(id);
+            classNames[id] = symbols.intern(cf.getName());
+            classPackages[id] = packages.intern(cf.getPackageName());
+
+            for(int m = 0; m < cf.methodCount(); m++, row++){
+                final MethodInfo method = cf.getMethod(m);
+                final CodeAttribute code = method.getCode();
+
+                columns[Column.OWNER.ordinal()][row] = id;
+                columns[Column.NAME.ordinal()][row] = symbols.intern(method.getName());
+                columns[Column.DESCRIPTOR.ordinal()][row] = symbols.intern(method.getDescriptor());
+                columns[Column.ACCESS.ordinal()][row] = method.getAccessMask();
+                if(code != null){
+                    columns[Column.CODE_LENGTH.ordinal()][row] = code.getLength();
+                    columns[Column.MAX_STACK.ordinal()][row] = code.getMaxStack();
+                    columns[Column.MAX_LOCALS.ordinal()][row] = code.getMaxLocals();
+                    columns[Column.INVOKES.ordinal()][row] = code.findInstructions(invokes).length;
+                }
+            }
+        }
+    }
+
+
+    public int rowCount(){ return rows; }
+    public int classCount(){ return classNames.length; }
+    public int packageCount(){ return packages.size(); }
+
+    /*The column itself, not a copy, so it mustn't be modified*/
+    public int[] getColumn(final Column column){ return columns[column.ordinal()]; }
+
+    public int get(final Column column, final int row){ return columns[column.ordinal()][row]; }
+
+    public SymbolTable getSymbols(){ return symbols; }
+
+    public String getClassName(final int classId){ return symbols.get(classNames[classId]); }
+    public String getPackageName(final int packageId){ return packages.get(packageId); }
+    public int getPackage(final int classId){ return classPackages[classId]; }
+
+    /*Dotted owner and name, plus the descriptor*/
+    public String getMethodName(final int row)
+    {
+        return (getClassName(get(Column.OWNER, row)) + "." + 
+            symbols.get(get(Column.NAME, row))).replace("/", ".") + 
+            symbols.get(get(Column.DESCRIPTOR, row));
+    }
+
+
+    public long sum(final Column column)
+    {
+        final int values[] = getColumn(column);
+        long sum = 0;
+        for(int i = 0; i < values.length; i++){
+            sum += values[i];
+        }
+        return sum;
+    }
+
+    public double average(final Column column)
+    {
+        return (rows == 0) ? 0 : sum(column) / (double)rows;
+    }
+
+    public int max(final Column column)
+    {
+        final int values[] = getColumn(column);
+        int max = 0;
+        for(int i = 0; i < values.length; i++){
+            max = Math.max(max, values[i]);
+        }
+        return max;
+    }
+
+    /*Nearest rank percentiles (0-100) of a column. The numeric columns are
+    mostly small values, so when the range is no wider than the number of
+    rows they are counted into a histogram; a wider range falls back to
+    sorting a copy of the column*/
+    public int[] percentiles(final Column column, final double... percents)
+    {
+        final int values[] = getColumn(column);
+        final int results[] = new int[percents.length];
+        if(rows == 0){
+            return results;
+        }
+
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for(int i = 0; i < values.length; i++){
+            min = Math.min(min, values[i]);
+            max = Math.max(max, values[i]);
+        }
+
+        final long range = (long)max - min + 1;
+        final int counts[];
+        int sorted[] = null;
+        if(range <= rows){
+            counts = new int[(int)range];
+            for(int i = 0; i < values.length; i++){
+                counts[values[i] - min]++;
+            }
+        } else {
+            counts = null;
+            sorted = values.clone();
+            Arrays.sort(sorted);
+        }
+
+        for(int p = 0; p < percents.length; p++){
+            final int rank = Math.max(1, Math.min(rows, (int)Math.ceil(percents[p] / 100 * rows)));
+            if(sorted != null){
+                results[p] = sorted[rank - 1];
+                continue;
+            }
+
+            int seen = 0;
+            int bucket = 0;
+            while(seen + counts[bucket] < rank){
+                seen += counts[bucket++];
+            }
+            results[p] = bucket + min;
+        }
+        return results;
+    }
+
+    /*Sum of a column for each class, indexed by class id*/
+    public long[] sumByClass(final Column column)
+    {
+        return sumBy(getColumn(Column.OWNER), null, classCount(), column);
+    }
+
+    /*Sum of a column for each package, indexed by package id*/
+    public long[] sumByPackage(final Column column)
+    {
+        return sumBy(getColumn(Column.OWNER), classPackages, packageCount(), column);
+    }
+
+    /*Rows per class and per package, for averages of the sums above*/
+    public long[] countByClass()
+    {
+        return sumBy(getColumn(Column.OWNER), null, classCount(), null);
+    }
+
+    public long[] countByPackage()
+    {
+        return sumBy(getColumn(Column.OWNER), classPackages, packageCount(), null);
+    }
+
+    /*Group rows by owner (mapped through groupOf if given), summing
+    the column, or counting rows if there's no column. The choices are
+    made outside the loops so each loop body stays branch free*/
+    private long[] sumBy(final int owners[], final int groupOf[], final int numGroups, 
+        final Column column)
+    {
+        final long sums[] = new long[numGroups];
+        int groups[] = owners;
+
+        if(groupOf != null){
+            groups = new int[rows];
+            for(int row = 0; row < rows; row++){
+                groups[row] = groupOf[owners[row]];
+            }
+        }
+
+        if(column == null){
+            for(int row = 0; row < rows; row++){
+                sums[groups[row]]++;
+            }
+        } else {
+            final int values[] = getColumn(column);
+            for(int row = 0; row < rows; row++){
+                sums[groups[row]] += values[row];
+            }
+        }
+        return sums;
+    }
+}
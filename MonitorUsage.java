@@ -0,0 +1,18 @@
+import java.util.*;
+
+/**
+ * Monitor instructions and calls made under a lock, from
+ * CodeAttribute.findMonitorUsage().
+ *
+ * @author Luke Mercuri
+ */
+class MonitorUsage
+{
+    final IntList enterSites = new IntList();
+    final IntList exitSites = new IntList();
+    final List<String> lockedCalls = new ArrayList<String>();
+
+    public IntList getEnterSites(){ return enterSites; }
+    public IntList getExitSites(){ return exitSites; }
+    public List<String> getLockedCalls(){ return lockedCalls; }
+}
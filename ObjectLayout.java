@@ -0,0 +1,116 @@
+import java.util.*;
+
+/**
+ * Estimates the shallow instance size of each parsed class from its field
+ * descriptors, including fields inherited through the parsed superclasses.
+ *
+ * Fields are laid out roughly the way HotSpot does it: superclass fields
+ * first, then this class's fields largest first, each aligned to its own
+ * size, with smaller fields dropped into any alignment gaps (such as the
+ * four bytes after a compressed header). The total is rounded up to the
+ * 8 byte object alignment. With compressed oops the header is 12 bytes and
+ * references 4, without them 16 and 8.
+ *
+ * @author Luke Mercuri
+ */
+public class ObjectLayout
+{
+    private static final int ALIGNMENT = 8;
+
+    private final Map<String, ClassFile> byName = new HashMap<String, ClassFile>();
+    private final Map<String, ClassLayout> layouts = new HashMap<String, ClassLayout>();
+    private final int headerSize;
+    private final int referenceSize;
+
+    public ObjectLayout(final ClassFile[] classes, final boolean compressedOops)
+    {
+        headerSize = compressedOops ? 12 : 16;
+        referenceSize = compressedOops ? 4 : 8;
+
+        for(ClassFile cf: classes){
+            byName.put(cf.getName(), cf);
+        }
+    }
+
+    public int getHeaderSize(){ return headerSize; }
+
+    /*Size in bytes of a field with the given descriptor*/
+    public int fieldSize(final String descriptor)
+    {
+        int size;
+
+        switch(descriptor.charAt(0)){
+            case 'B':
+            case 'Z':
+                size = 1; break;
+            case 'C':
+            case 'S':
+                size = 2; break;
+            case 'I':
+            case 'F':
+                size = 4; break;
+            case 'J':
+            case 'D':
+                size = 8; break;
+            //'L' or '['
+            default:
+                size = referenceSize;
+        }
+
+        return size;
+    }
+
+    /*Layout of a parsed class, worked out once and then reused by subclasses*/
+    public ClassLayout layoutOf(final ClassFile cf)
+    {
+        ClassLayout layout = layouts.get(cf.getName());
+
+        if(layout == null)
+        {
+            final String superName = cf.getSuperName();
+            final ClassFile superClass = byName.get(superName);
+
+            if(superClass != null && superClass != cf)
+            {
+                layout = new ClassLayout(cf, layoutOf(superClass));
+            }
+            else
+            {
+                //anything other than Object above us wasn't parsed
+                layout = new ClassLayout(cf, headerSize,
+                    superName == null || "java/lang/Object".equals(superName));
+            }
+
+            final List<FieldInfo> own = new ArrayList<FieldInfo>();
+            for(int i = 0; i < cf.fieldCount(); i++){
+                if(!cf.getField(i).checkAccess(Flag.ACC_STATIC)){
+                    own.add(cf.getField(i));
+                }
+            }
+
+            //largest first, references after primitives of the same size
+            Collections.sort(own, new Comparator<FieldInfo>(){
+                public int compare(final FieldInfo a, final FieldInfo b){
+                    final int bySize = fieldSize(b.getDescriptor()) - fieldSize(a.getDescriptor());
+                    return bySize != 0 ? bySize : 
+                        Boolean.compare(isReference(a), isReference(b));
+                }
+            });
+
+            for(FieldInfo field: own){
+                layout.place(field, fieldSize(field.getDescriptor()));
+            }
+
+            layout.finish(ALIGNMENT);
+            layouts.put(cf.getName(), layout);
+        }
+
+        return layout;
+    }
+
+    private static boolean isReference(final FieldInfo field)
+    {
+        final char type = field.getDescriptor().charAt(0);
+        return type == 'L' || type == '[';
+    }
+}
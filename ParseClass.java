@@ -1,5 +1,6 @@
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * Parses multiple Class files and reports 
@@ -11,77 +12,597 @@ import java.util.*;
 public class ParseClass
 {
 
+    /*Number of worker threads used to parse class files (--threads=N)*/
+    private static int threads = 1;
+
+    /*Number of slowest classes listed by --stats, or zero if stats are off*/
+    private static int statsSlowest = 0;
+
+    /*Extra entry points for -r, one per line (--roots=file)*/
+    private static String rootsFile = null;
+
+    /*HotSpot's MaxInlineSize, FreqInlineSize and HugeMethodLimit for -i*/
+    private static int inlineLimits[] = {35, 325, 8000};
+
+    /*Whether -z assumes compressed oops (--no-compressed-oops)*/
+    private static boolean compressedOops = true;
+
+    /*Unix domain socket -q listens on instead of stdin (--socket=path)*/
+    private static String socketPath = null;
+
+    /*Only classes matching these patterns are reported on (--include=patterns)*/
+    private static ClassNameFilter filter = null;
+
+    /*Snapshot file -w writes and -u reads (--snapshot=path)*/
+    private static String snapshotPath = null;
+
+    /*Stop parsing each class after its interfaces (used by -e)*/
+    private static boolean headerOnly = false;
+
     public static void main(final String[] args)
     {
+        /*Any --options must come before the -[mode] argument*/
+        int argIndex = 0;
+        while(argIndex < args.length && args[argIndex].startsWith("--"))
+        {
+            if(!parseOption(args[argIndex]))
+            {
+                usage();
+                return;
+            }
+            argIndex++;
+        }
+
+        /*The daemon never finishes, so there'd be no point to report at*/
+        if(ParseStats.isEnabled() && args.length - argIndex > 0 && 
+            args[argIndex].length() == 2 && Character.toLowerCase(args[argIndex].charAt(1)) == 'q')
+        {
+            System.out.println("--stats cannot be used with -q");
+            return;
+        }
+
+        /*Queries a snapshot, so there may be no further arguments*/
+        if(args.length - argIndex > 0 && args[argIndex].length() == 2 && 
+            Character.toLowerCase(args[argIndex].charAt(1)) == 'u' && snapshotPath != null)
+        {
+            ParseStats.begin(ParseStats.Phase.REPORT);
+            snapshotQuery(Arrays.copyOfRange(args, argIndex+1, args.length));
+            ParseStats.end();
+            printStats();
+            return;
+        }
+
         /*Check supplied argumants for validity*/
-        if(args.length > 1 && 
-            args[0].length() == 2 && args[0].charAt(0) == '-')
+        if(args.length - argIndex > 1 && 
+            args[argIndex].length() == 2 && args[argIndex].charAt(0) == '-')
         {
-            ClassFile classes[] = new ClassFile[args.length-1];
+            /*Streamed straight off the bytes, without building ClassFiles*/
+            if(Character.toLowerCase(args[argIndex].charAt(1)) == 'h')
+            {
+                ParseStats.begin(ParseStats.Phase.REPORT);
+                opcodes(Arrays.copyOfRange(args, argIndex+1, args.length));
+                ParseStats.end();
+                printStats();
+                return;
+            }
+
+            /*The hierarchy report needs nothing past the interfaces*/
+            headerOnly = Character.toLowerCase(args[argIndex].charAt(1)) == 'e';
+
+            final ClassFile classes[] = parseClasses(
+                Arrays.copyOfRange(args, argIndex+1, args.length), threads);
 
+            ParseStats.begin(ParseStats.Phase.HIERARCHY);
+            resolveHierarchy(classes);
+            ParseStats.end();
 
-            /*Attempt to open and parse each specified classfile*/
-            for(int i = 1; i < args.length; i++)
+            /*Stay resident and answer queries instead of a single report*/
+            if(Character.toLowerCase(args[argIndex].charAt(1)) == 'q')
             {
-                try
-                {
-                    String fileName = args[i];
+                daemon(classes);
+                return;
+            }
+
+            if(Character.toLowerCase(args[argIndex].charAt(1)) == 'w')
+            {
+                ParseStats.begin(ParseStats.Phase.REPORT);
+                writeSnapshot(classes);
+                ParseStats.end();
+                printStats();
+                return;
+            }
 
+            /*Choose relevant option*/
+            ParseStats.begin(ParseStats.Phase.REPORT);
+            final boolean known = report(args[argIndex].charAt(1), classes);
+            ParseStats.end();
+
+            if(!known)
+            {
+                usage();
+            }
+            else
+            {
+                printStats();
+            }
+        }
+        /*Invalid args supplied*/
+        else
+        {
+            usage();
+        }
+    }
+
+
+    /*Print the --stats summary, if it was asked for*/
+    private static void printStats()
+    {
+        if(ParseStats.isEnabled())
+        {
+            ParseStats.print(statsSlowest);
+        }
+    }
 
-                    //Append ".class" if not given in filename
-                    if(!(fileName.contains(".")))
-                    {
-                        fileName += ".class";
-                    }
 
-                    classes[i-1] = new ClassFile(fileName);
+    /*Handle a single --option, returns false if it isn't recognised*/
+    private static boolean parseOption(final String arg)
+    {
+        boolean valid = true;
 
+        try
+        {
+            if(arg.startsWith("--threads="))
+            {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+                valid = threads > 0;
+            }
+            else if(arg.startsWith("--roots="))
+            {
+                rootsFile = arg.substring("--roots=".length());
+            }
+            else if(arg.startsWith("--inline-limits="))
+            {
+                final String limits[] = arg.substring("--inline-limits=".length()).split(",");
+                valid = limits.length == 3;
+                for(int i = 0; i < limits.length && valid; i++){
+                    inlineLimits[i] = Integer.parseInt(limits[i].trim());
                 }
-                /*Error opening/reading file*/
-                catch(IOException e)
+            }
+            else if(arg.startsWith("--include="))
+            {
+                filter = new ClassNameFilter(arg.substring("--include=".length()));
+            }
+            else if(arg.startsWith("--socket="))
+            {
+                socketPath = arg.substring("--socket=".length());
+            }
+            else if(arg.startsWith("--snapshot="))
+            {
+                snapshotPath = arg.substring("--snapshot=".length());
+            }
+            else if("--no-compressed-oops".equals(arg))
+            {
+                compressedOops = false;
+            }
+            else if("--stats".equals(arg) || arg.startsWith("--stats="))
+            {
+                statsSlowest = "--stats".equals(arg) ? 10 : 
+                    Integer.parseInt(arg.substring("--stats=".length()));
+                valid = statsSlowest >= 0;
+                ParseStats.enable();
+            }
+            else
+            {
+                valid = false;
+            }
+        }
+        catch(NumberFormatException e)
+        {
+            valid = false;
+        }
+
+        return valid;
+    }
+
+
+    /*
+    Attempt to open and parse each specified classfile, 
+    spread over the given number of threads.  Files that
+    could not be parsed are reported and left out of the result
+    */
+    public static ClassFile[] parseClasses(final String[] fileNames, final int numThreads)
+    {
+        final List<ClassFile> classes = new ArrayList<ClassFile>(fileNames.length);
+        final long start = System.nanoTime();
+
+        if(numThreads <= 1)
+        {
+            for(String fileName: fileNames)
+            {
+                final ClassFile cf = parseClass(fileName);
+                if(cf != null)
                 {
-                    System.out.printf("Cannot read \"%s\": %s\n",
-                        args[i], e.getMessage());
+                    classes.add(cf);
                 }
-                /*Malformed or invalid class file*/
-                catch(ClassFileParserException e)
+            }
+        }
+        else
+        {
+            final ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+            final List<Future<ClassFile>> results = 
+                new ArrayList<Future<ClassFile>>(fileNames.length);
+
+            for(final String fileName: fileNames)
+            {
+                results.add(pool.submit(new Callable<ClassFile>(){
+                    public ClassFile call(){
+                        return parseClass(fileName);
+                    }
+                }));
+            }
+
+            /*Collect in argument order so reports stay deterministic*/
+            try
+            {
+                for(Future<ClassFile> result: results)
                 {
-                    System.out.printf("Class file format error in \"%s\": %s\n",
-                        args[i], e.getMessage());
+                    final ClassFile cf = result.get();
+                    if(cf != null)
+                    {
+                        classes.add(cf);
+                    }
+                }
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            catch(ExecutionException e)
+            {
+                throw new IllegalStateException(e.getCause());
+            }
+            finally
+            {
+                pool.shutdown();
+            }
+        }
+
+        ParseStats.parseFinished(Math.max(numThreads, 1), System.nanoTime() - start);
+        return classes.toArray(new ClassFile[classes.size()]);
+    }
+
+
+    /*Parse a single classfile, printing an error and returning null on 
+    failure or if the class doesn't match --include*/
+    public static ClassFile parseClass(final String name)
+    {
+        ClassFile cf = null;
+        String fileName = name;
+
+        //Append ".class" if not given in filename
+        if(!(fileName.contains(".")))
+        {
+            fileName += ".class";
+        }
+
+        try
+        {
+            cf = ClassFile.read(fileName, headerOnly, filter);
+        }
+        /*Error opening/reading file*/
+        catch(IOException e)
+        {
+            System.out.printf("Cannot read \"%s\": %s\n",
+                name, e.getMessage());
+        }
+        /*Malformed or invalid class file*/
+        catch(ClassFileParserException e)
+        {
+            System.out.printf("Class file format error in \"%s\": %s\n",
+                name, e.getMessage());
+        }
+        finally
+        {
+            ParseStats.unwind();
+        }
+
+        return cf;
+    }
+
+
+    //Used to be O(N^{2}), now looked up by name
+    public static void resolveHierarchy(final ClassFile[] classes)
+    {
+        final HierarchyResolutionEvent event = new HierarchyResolutionEvent();
+        event.begin();
+
+        ClassFile.resolveHierarchy(classes);
+
+        event.end();
+        if(event.shouldCommit())
+        {
+            event.classCount = classes.length;
+            event.commit();
+        }
+    }
+
+
+    /*Serve queries over the parsed classes until told to stop*/
+    private static void daemon(final ClassFile[] classes)
+    {
+        final QueryDaemon daemon = new QueryDaemon(classes);
+
+        try
+        {
+            if(socketPath == null)
+            {
+                daemon.serve();
+            }
+            else
+            {
+                daemon.listen(socketPath);
+            }
+        }
+        catch(IOException e)
+        {
+            System.out.println("Query daemon failed: " + e.getMessage());
+        }
+    }
+
+
+    /*Save the parsed corpus for -u (and later runs) to map*/
+    private static void writeSnapshot(final ClassFile[] classes)
+    {
+        if(snapshotPath == null)
+        {
+            usage();
+            return;
+        }
+
+        final long start = System.nanoTime();
+        try
+        {
+            Snapshot.write(classes, snapshotPath);
+            System.out.printf("Wrote snapshot of %d classes to %s (%d bytes) in %.3f ms\n", 
+                classes.length, snapshotPath, new File(snapshotPath).length(), 
+                (System.nanoTime() - start) / 1e6);
+        }
+        catch(IOException e)
+        {
+            System.out.printf("Cannot write \"%s\": %s\n", snapshotPath, e.getMessage());
+        }
+    }
+
+    /*
+    Answer from a mapped snapshot instead of parsing anything: the named 
+    classes' hierarchy and methods, or the most called methods if none 
+    are named
+    */
+    private static void snapshotQuery(final String[] classNames)
+    {
+        final long start = System.nanoTime();
+        final Snapshot snapshot;
+        try
+        {
+            snapshot = Snapshot.open(snapshotPath);
+        }
+        catch(IOException e)
+        {
+            System.out.printf("Cannot read \"%s\": %s\n", snapshotPath, e.getMessage());
+            return;
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        System.out.printf("\nSnapshot %s: %d classes, %d methods (%d declared), %d call edges, %d symbols\n",
+            snapshot.getPath(), snapshot.classCount(), snapshot.methodCount(), 
+            snapshot.declaredCount(), snapshot.edgeCount(), snapshot.symbolCount());
+        System.out.printf("Mapped %d bytes in %.3f ms\n", snapshot.getFileSize(), elapsed / 1e6);
+
+        if(classNames.length == 0)
+        {
+            /*Partial selection of the top 10 by caller count*/
+            final int top[] = new int[Math.min(10, snapshot.methodCount())];
+            int found = 0;
+            for(int m = 0; m < snapshot.methodCount(); m++){
+                int i = found < top.length ? found++ : top.length;
+                if(i == top.length && snapshot.callerCount(m) <= snapshot.callerCount(top[i - 1])){
+                    continue;
+                }
+                for(; i > 0 && snapshot.callerCount(top[i - 1]) < snapshot.callerCount(m); i--){
+                    if(i < top.length){
+                        top[i] = top[i - 1];
+                    }
                 }
+                top[i] = m;
+            }
 
-                
+            System.out.println("\nMost called methods:");
+            for(int i = 0; i < found; i++){
+                System.out.printf("%s%6d  %s\n", Grosstab.str(1), 
+                    snapshot.callerCount(top[i]), snapshot.getDisplayName(top[i]));
             }
+        }
 
-            //O(N^{2}), get hype
-            for(ClassFile cf: classes){
-                cf.resolveChildren(classes);
+        for(String name: classNames)
+        {
+            final int id = snapshot.findClass(name);
+            if(id < 0)
+            {
+                System.out.printf("\nNot in snapshot: %s\n", name);
+                continue;
             }
 
+            System.out.printf("\n%s %s\n", snapshot.checkAccess(id, Flag.ACC_INTERFACE) ? 
+                "Interface" : "Class", snapshot.getClassName(id).replace("/", "."));
+            if(snapshot.getSuperName(id) != null){
+                System.out.printf("%sExtends: %s\n", Grosstab.str(1), 
+                    snapshot.getSuperName(id).replace("/", "."));
+            }
+            for(int i = 0; i < snapshot.interfaceCount(id); i++){
+                System.out.printf("%sImplements: %s\n", Grosstab.str(1), 
+                    snapshot.getInterfaceName(id, i).replace("/", "."));
+            }
+            for(int i = 0; i < snapshot.childCount(id); i++){
+                System.out.printf("%sSubtype: %s\n", Grosstab.str(1), 
+                    snapshot.getClassName(snapshot.getChild(id, i)).replace("/", "."));
+            }
 
-            /*Choose relevant option*/
-            switch (args[0].charAt(1)){
-                        case 'm': 
-                        case 'M':
-                            methods(classes); break;
-                        case 'c': 
-                        case 'C':
-                            calls(classes); break;
-                        case 'o':
-                        case 'O': 
-                            overrides(classes); break;
-                        case 'v':
-                        case 'V':
-                            //ºSeCReT* option
-                            verbose(classes); break;
-                        default: usage();
+            System.out.printf("%s%6s %7s %7s  %s\n", Grosstab.str(1), "Code", "Callers", "Callees", "Method");
+            final int first = snapshot.getClassColumn(Snapshot.CLASS_FIRST_METHOD, id);
+            for(int m = first; m < first + snapshot.getClassColumn(Snapshot.CLASS_METHOD_COUNT, id); m++){
+                System.out.printf("%s%6d %7d %7d  %s%s\n", Grosstab.str(1), 
+                    snapshot.get(MethodTable.Column.CODE_LENGTH, m), snapshot.callerCount(m),
+                    snapshot.calleeCount(m), snapshot.getMethodName(m), snapshot.getDescriptor(m));
             }
         }
-        /*Invalid args supplied*/
-        else
+        System.out.println();
+    }
+
+
+    /*
+    Count how often each opcode is used across the given files, 
+    using a ClassReader so no ClassFile objects are built
+    */
+    public static void opcodes(final String[] fileNames){
+        final long counts[] = new long[256];
+        //instructions, methods, classes
+        final long totals[] = new long[3];
+
+        final ClassVisitor visitor = new ClassVisitor(){
+            public boolean visitHeader(final ClassReader reader, final int majorVersion, 
+                final int access, final String name, final String superName, final String[] interfaces){
+                final boolean wanted = filter == null || filter.matches(name);
+                totals[2] += wanted ? 1 : 0;
+                return wanted;
+            }
+
+            public boolean visitCode(final int maxStack, final int maxLocals, final int codeLength){
+                totals[1]++;
+                return true;
+            }
+
+            public void visitInstruction(final int pc, final Opcode opcode, final int cpIndex){
+                counts[opcode.ordinal()]++;
+                totals[0]++;
+            }
+        };
+
+        for(String name: fileNames){
+            final String fileName = name.contains(".") ? name : name + ".class";
+            try{
+                new ClassReader(fileName).accept(visitor);
+            }
+            catch(IOException e){
+                System.out.printf("Cannot read \"%s\": %s\n", name, e.getMessage());
+            }
+            catch(ClassFileParserException e){
+                System.out.printf("Class file format error in \"%s\": %s\n", name, e.getMessage());
+            }
+        }
+
+        final List<Opcode> used = new ArrayList<Opcode>();
+        for(Opcode opcode: Opcode.values()){
+            if(counts[opcode.ordinal()] > 0){
+                used.add(opcode);
+            }
+        }
+        Collections.sort(used, new Comparator<Opcode>(){
+            public int compare(final Opcode a, final Opcode b){
+                return Long.compare(counts[b.ordinal()], counts[a.ordinal()]);
+            }
+        });
+
+        System.out.println("\nOpcode usage:");
+        for(Opcode opcode: used){
+            System.out.printf("%s%-16s %10d %6.2f%%\n", Grosstab.str(1), opcode.name().toLowerCase(),
+                counts[opcode.ordinal()], 100.0 * counts[opcode.ordinal()] / totals[0]);
+        }
+        System.out.printf("\n%d instructions in %d methods of %d classes\n\n", 
+            totals[0], totals[1], totals[2]);
+    }
+
+
+    /*Run the report for a given mode, returns false for an unknown mode*/
+    public static boolean report(final char mode, final ClassFile[] classes)
+    {
+        boolean known = true;
+        final ReportEvent event = new ReportEvent();
+        event.begin();
+
+        switch (mode){
+                    case 'm': 
+                    case 'M':
+                        methods(classes); break;
+                    case 'c': 
+                    case 'C':
+                        calls(classes); break;
+                    case 'o':
+                    case 'O': 
+                        overrides(classes); break;
+                    case 'f':
+                    case 'F':
+                        footprint(classes); break;
+                    case 'g':
+                    case 'G':
+                        callGraph(classes); break;
+                    case 'r':
+                    case 'R':
+                        reachability(classes); break;
+                    case 'p':
+                    case 'P':
+                        megamorphic(classes); break;
+                    case 'i':
+                    case 'I':
+                        inlining(classes); break;
+                    case 'a':
+                    case 'A':
+                        allocations(classes); break;
+                    case 'l':
+                    case 'L':
+                        locks(classes); break;
+                    case 'd':
+                    case 'D':
+                        devirtualization(classes); break;
+                    case 'z':
+                    case 'Z':
+                        instanceSizes(classes); break;
+                    case 'x':
+                    case 'X':
+                        falseSharing(classes); break;
+                    case 'k':
+                    case 'K':
+                        metaspace(classes); break;
+                    case 't':
+                    case 'T':
+                        classInit(classes); break;
+                    case 'y':
+                    case 'Y':
+                        reflection(classes); break;
+                    case 'j':
+                    case 'J':
+                        indySites(classes); break;
+                    case 'e':
+                    case 'E':
+                        hierarchy(classes); break;
+                    case 's':
+                    case 'S':
+                        methodTable(classes); break;
+                    case 'v':
+                    case 'V':
+                        //ºSeCReT* option
+                        verbose(classes); break;
+                    default: known = false;
+        }
+
+        event.end();
+        if(known && event.shouldCommit())
         {
-            usage();
+            event.mode = String.valueOf(mode);
+            event.classCount = classes.length;
+            event.commit();
         }
+
+        return known;
     }
 
 
@@ -126,7 +647,8 @@ public class ParseClass
 
 
     /*
-    For each method in each class, list all calls made (with the exception of invokedynamic)
+    For each method in each class, list all calls made (invokedynamic 
+    sites are listed after the others, with what they link to)
     */
     public static void calls(final ClassFile[] classes){
 
@@ -156,21 +678,26 @@ public class ParseClass
                     try{
                         //retreive and print out all method calls found in this code attribute
                         final String[] methodCalls = code.getMethodCalls(cf);
+                        //invokedynamic sites, linked through BootstrapMethods
+                        final List<IndySite> indySites = code.findIndySites(cf);
                         
                         System.out.println(Grosstab.str(2) + "Calls:");
 
                         //At least one call is made
-                        if(methodCalls.length > 0){
+                        if(methodCalls.length + indySites.size() > 0){
                             for(int c = 0; c < methodCalls.length; c++){
                                 System.out.println(Grosstab.str(3) + methodCalls[c]);
                             }
+                            for(IndySite site: indySites){
+                                System.out.println(Grosstab.str(3) + site);
+                            }
                         }
                         //no calls are made (what a useless method)
                         else{
                             System.out.println(Grosstab.str(3) + "<No methods called>");
                         }
 
-                        numCalls+=methodCalls.length;
+                        numCalls+=methodCalls.length + indySites.size();
                     }
                     catch(InvalidConstantPoolIndex e){
                         System.out.println(e.getMessage());
@@ -245,6 +772,994 @@ public class ParseClass
     }
 
 
+    /*
+    Estimate the heap kept alive by each parsed class,
+    broken down by the kind of structure holding it
+    */
+    public static void footprint(final ClassFile[] classes){
+        final Footprint total = new Footprint();
+
+        for(ClassFile cf: classes){
+            System.out.printf(cf.isInterface() ? 
+                "\nInterface: %s\n" : "\nClass: %s\n", cf.getName());
+
+            final Footprint fp = Footprint.of(cf);
+            printFootprint(fp, 1);
+            total.add(fp);
+        }
+
+        System.out.printf("\nOverall retained size for %d classes:\n", classes.length);
+        printFootprint(total, 1);
+        if(classes.length > 0){
+            System.out.printf("%sAverage retained size per class: %.2f bytes\n\n", 
+                Grosstab.str(1), total.total()/(double)classes.length);
+        }
+    }
+
+    private static void printFootprint(final Footprint fp, final int tabs){
+        final long size = fp.total();
+        System.out.printf("%sRetained size: %d bytes\n", Grosstab.str(tabs), size);
+
+        for(Footprint.Category category: Footprint.Category.values()){
+            System.out.printf("%s%-22s %10d bytes (%5.1f%%)\n", Grosstab.str(tabs+1),
+                category.getLabel() + ":", fp.get(category), 
+                size == 0 ? 0.0 : 100.0*fp.get(category)/size);
+        }
+    }
+
+
+    /*
+    Build the corpus-wide call graph and list, for each method,
+    the methods it calls and the methods that call it
+    */
+    public static void callGraph(final ClassFile[] classes){
+        final CallGraph graph = CallGraph.build(classes);
+
+        for(ClassFile cf: classes){
+            System.out.printf(cf.isInterface() ? 
+                "\nInterface: %s\n" : "\nClass: %s\n", cf.getName());
+
+            for(int m = 0; m < cf.methodCount(); m++){
+                final MethodInfo method = cf.getMethod(m);
+                final int id = graph.getId(cf.getName(), method.getName(), method.getDescriptor());
+
+                System.out.printf("%sMethod: %s\n", Grosstab.str(1), 
+                    method.getFriendlyDescriptor());
+
+                System.out.printf("%sCalls (%d):\n", Grosstab.str(2), graph.calleeCount(id));
+                for(int c = 0; c < graph.calleeCount(id); c++){
+                    System.out.println(Grosstab.str(3) + graph.getDisplayName(graph.getCallee(id, c)));
+                }
+
+                System.out.printf("%sCalled by (%d):\n", Grosstab.str(2), graph.callerCount(id));
+                for(int c = 0; c < graph.callerCount(id); c++){
+                    System.out.println(Grosstab.str(3) + graph.getDisplayName(graph.getCaller(id, c)));
+                }
+            }
+        }
+
+        System.out.printf("\nCall graph: %d methods (%d declared), %d call edges, %d bytes of edge arrays\n\n",
+            graph.methodCount(), graph.declaredCount(), graph.edgeCount(), graph.getEdgeBytes());
+    }
+
+
+    /*
+    Starting from every main method, static initialiser and
+    configured root, list the methods that can never be called
+    */
+    public static void reachability(final ClassFile[] classes){
+        final List<String> roots = new ArrayList<String>();
+
+        if(rootsFile != null){
+            try{
+                final BufferedReader in = new BufferedReader(new FileReader(rootsFile));
+                try{
+                    String line;
+                    while((line = in.readLine()) != null){
+                        line = line.trim();
+                        if(line.length() > 0 && !line.startsWith("#")){
+                            roots.add(line);
+                        }
+                    }
+                }
+                finally{
+                    in.close();
+                }
+            }
+            catch(IOException e){
+                System.out.printf("Cannot read \"%s\": %s\n", rootsFile, e.getMessage());
+                return;
+            }
+        }
+
+        final long start = System.nanoTime();
+        final CallGraph graph = CallGraph.build(classes);
+        final Reachability reachability = new Reachability(graph, classes);
+        final int entryPoints[] = reachability.findEntryPoints(roots);
+
+        final ConcurrentBitSet reachable;
+        try{
+            reachable = reachability.reachableFrom(entryPoints, threads);
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            return;
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        int numMethods = 0;
+        int numUnreachable = 0;
+        ClassFile lastClass = null;
+
+        for(int id = 0; id < graph.declaredCount(); id++){
+            //methods without code have nothing to trim
+            if(graph.getMethodInfo(id).getCode() == null){
+                continue;
+            }
+            numMethods++;
+
+            if(!reachable.get(id)){
+                //only list classes that have something unreachable
+                final ClassFile cf = graph.getClassFile(id);
+                if(cf != lastClass){
+                    System.out.printf(cf.isInterface() ? 
+                        "\nInterface: %s\n" : "\nClass: %s\n", cf.getName());
+                    lastClass = cf;
+                }
+                System.out.printf("%sUnreachable: %s\n", Grosstab.str(1), 
+                    graph.getMethodInfo(id).getFriendlyDescriptor());
+                numUnreachable++;
+            }
+        }
+
+        System.out.printf("\nEntry points: %d\n", entryPoints.length);
+        if(numMethods > 0){
+            System.out.printf("Unreachable methods: %d of %d (%.2f%%), found in %.2f ms\n\n",
+                numUnreachable, numMethods, 100.0*numUnreachable/numMethods, elapsed/1e6);
+        }
+    }
+
+
+    /*
+    Resolve the possible targets of every invokevirtual and 
+    invokeinterface, then rank the sites that could reach more 
+    than two implementations (too many for HotSpot to inline)
+    */
+    public static void megamorphic(final ClassFile[] classes){
+        final CallTargetResolver resolver = new CallTargetResolver(classes);
+        final List<CallSite> sites = new ArrayList<CallSite>();
+        final int siteCounts[] = new int[3];
+        int numSites = 0;
+        int numUnresolved = 0;
+
+        for(ClassFile cf: classes){
+            for(int m = 0; m < cf.methodCount(); m++){
+                final MethodInfo method = cf.getMethod(m);
+                final CodeAttribute code = method.getCode();
+                if(code == null){
+                    continue;
+                }
+
+                for(int pc: code.findInstructions(Opcode.INVOKEVIRTUAL, Opcode.INVOKEINTERFACE)){
+                    try{
+                        final ConstantRef ref = cf.getMethodRefFromCPIndex(code.getIndexOperand(pc));
+                        final List<String> targets = resolver.resolve(
+                            ref.getClassName(), ref.getName(), ref.getType());
+                        numSites++;
+
+                        if(targets == null || targets.isEmpty()){
+                            numUnresolved++;
+                        }
+                        //0: monomorphic, 1: bimorphic, 2: megamorphic
+                        else{
+                            siteCounts[Math.min(targets.size(), 3) - 1]++;
+                            if(targets.size() > 2){
+                                sites.add(new CallSite(
+                                    cf.getName().replace("/", ".") + "." + method.getName(), pc,
+                                    cf.getFullMethodNameFromRef(ref) + ref.getType(), targets));
+                            }
+                        }
+                    }
+                    catch(InvalidConstantPoolIndex e){
+                        System.out.println(e.getMessage());
+                    }
+                }
+            }
+        }
+
+        //most implementations first
+        Collections.sort(sites, new Comparator<CallSite>(){
+            public int compare(final CallSite a, final CallSite b){
+                return b.getTargets().size() - a.getTargets().size();
+            }
+        });
+
+        System.out.println("\nMegamorphic call sites:");
+        for(CallSite site: sites){
+            System.out.printf("%s%d targets: %s @%d calls %s\n", Grosstab.str(1), 
+                site.getTargets().size(), site.getCaller(), site.getOffset(), site.getCallee());
+            for(String target: site.getTargets()){
+                System.out.println(Grosstab.str(2) + "Implemented in: " + target.replace("/", "."));
+            }
+        }
+
+        System.out.printf("\nVirtual/interface call sites: %d (%d outside the parsed classes)\n", 
+            numSites, numUnresolved);
+        System.out.printf("Monomorphic: %d, Bimorphic: %d, Megamorphic: %d\n", 
+            siteCounts[0], siteCounts[1], siteCounts[2]);
+        System.out.printf("Distinct call targets resolved: %d\n\n", resolver.cacheSize());
+    }
+
+
+    /*
+    List methods whose bytecode is too big for HotSpot to inline
+    (or, past HugeMethodLimit, to compile at all), along with
+    how many call sites in the corpus could run them, including
+    calls through a supertype or interface
+    */
+    public static void inlining(final ClassFile[] classes){
+        final CallGraph graph = CallGraph.build(classes);
+        final int callSites[] = countCallSites(graph, new CallTargetResolver(classes));
+        final String labels[] = {"MaxInlineSize", "FreqInlineSize", "HugeMethodLimit"};
+        final int numOver[] = new int[labels.length];
+        final List<Integer> flagged = new ArrayList<Integer>();
+
+        for(int id = 0; id < graph.declaredCount(); id++){
+            if(graph.getMethodInfo(id).getCodeSize() > inlineLimits[0]){
+                flagged.add(id);
+            }
+        }
+
+        //most call sites first, then biggest
+        Collections.sort(flagged, new Comparator<Integer>(){
+            public int compare(final Integer a, final Integer b){
+                final int byCallers = callSites[b] - callSites[a];
+                return byCallers != 0 ? byCallers : 
+                    graph.getMethodInfo(b).getCodeSize() - graph.getMethodInfo(a).getCodeSize();
+            }
+        });
+
+        System.out.printf("\nMethods over MaxInlineSize=%d, FreqInlineSize=%d, HugeMethodLimit=%d\n",
+            inlineLimits[0], inlineLimits[1], inlineLimits[2]);
+        System.out.println("(call sites include calls through a supertype or interface that could reach them):");
+        System.out.printf("%s%10s %10s  %-16s %s\n", Grosstab.str(1), 
+            "Call sites", "Bytes", "Exceeds", "Method");
+
+        for(int id: flagged){
+            final int size = graph.getMethodInfo(id).getCodeSize();
+
+            //the biggest limit this method is over
+            int limit = labels.length - 1;
+            while(size <= inlineLimits[limit]){
+                limit--;
+            }
+            numOver[limit]++;
+
+            System.out.printf("%s%10d %10d  %-16s %s\n", Grosstab.str(1), 
+                callSites[id], size, labels[limit], graph.getDisplayName(id));
+        }
+
+        System.out.printf("\nOnly inlined when hot (over %s): %d\n", labels[0], numOver[0]);
+        System.out.printf("Never inlined (over %s): %d\n", labels[1], numOver[1]);
+        System.out.printf("Never compiled (over %s): %d\n\n", labels[2], numOver[2]);
+    }
+
+    /*Call sites that could run each declared method.  A call naming an
+    overridable method counts for every implementation the resolver
+    says it could reach, so one through an interface or superclass
+    counts for the classes actually doing the work, while static,
+    private and constructor calls only count for the method named*/
+    private static int[] countCallSites(final CallGraph graph, final CallTargetResolver resolver){
+        final int callSites[] = new int[graph.declaredCount()];
+
+        for(int id = 0; id < graph.methodCount(); id++){
+            final int sites = graph.callerCount(id);
+            if(sites == 0){
+                continue;
+            }
+
+            final String name = graph.getName(id);
+            final String descriptor = graph.getDescriptor(id);
+            final boolean direct = name.startsWith("<") || (graph.isDeclared(id) &&
+                (graph.getMethodInfo(id).checkAccess(Flag.ACC_STATIC) || 
+                 graph.getMethodInfo(id).checkAccess(Flag.ACC_PRIVATE)));
+            final List<String> targets = direct ? null : 
+                resolver.resolve(graph.getOwner(id), name, descriptor);
+
+            if(targets == null){
+                if(graph.isDeclared(id)){
+                    callSites[id] += sites;
+                }
+                continue;
+            }
+
+            for(String target: targets){
+                final int targetId = graph.getId(target, name, descriptor);
+                if(targetId != -1 && graph.isDeclared(targetId)){
+                    callSites[targetId] += sites;
+                }
+            }
+        }
+
+        return callSites;
+    }
+
+
+    /*
+    Rank methods by the number of allocation sites (new, arrays
+    and boxing) found inside loops, a rough guide to GC pressure
+    */
+    public static void allocations(final ClassFile[] classes){
+        final List<String> methodNames = new ArrayList<String>();
+        final List<LoopAllocations> found = new ArrayList<LoopAllocations>();
+        final List<Integer> order = new ArrayList<Integer>();
+        int totalSites = 0;
+
+        for(ClassFile cf: classes){
+            for(int m = 0; m < cf.methodCount(); m++){
+                final MethodInfo method = cf.getMethod(m);
+                final CodeAttribute code = method.getCode();
+                if(code == null){
+                    continue;
+                }
+
+                try{
+                    final LoopAllocations allocations = code.findLoopAllocations(cf);
+                    if(allocations.total() > 0){
+                        order.add(found.size());
+                        found.add(allocations);
+                        methodNames.add((cf.getName() + "." + method.getName()).replace("/", ".") + 
+                            method.getDescriptor());
+                        totalSites += allocations.total();
+                    }
+                }
+                catch(InvalidConstantPoolIndex e){
+                    System.out.println(e.getMessage());
+                }
+            }
+        }
+
+        //most allocation sites first
+        Collections.sort(order, new Comparator<Integer>(){
+            public int compare(final Integer a, final Integer b){
+                return found.get(b).total() - found.get(a).total();
+            }
+        });
+
+        System.out.println("\nAllocation sites inside loops:");
+        System.out.printf("%s%6s %6s %6s %6s  %s\n", Grosstab.str(1), 
+            "Total", "new", "Arrays", "Boxing", "Method");
+        for(int i: order){
+            final LoopAllocations allocations = found.get(i);
+            System.out.printf("%s%6d %6d %6d %6d  %s\n", Grosstab.str(1), allocations.total(),
+                allocations.getObjects(), allocations.getArrays(), allocations.getBoxing(), 
+                methodNames.get(i));
+        }
+
+        System.out.printf("\nMethods allocating in loops: %d, allocation sites in loops: %d\n\n", 
+            found.size(), totalSites);
+    }
+
+
+    /*
+    Inventory of locking: synchronized methods, monitorenter and
+    monitorexit sites and the calls made while holding a monitor,
+    totalled per class and per package
+    */
+    public static void locks(final ClassFile[] classes){
+        //synchronized methods, monitorenter sites, calls under a lock
+        final Map<String, int[]> classTotals = new TreeMap<String, int[]>();
+        final Map<String, int[]> packageTotals = new TreeMap<String, int[]>();
+
+        for(ClassFile cf: classes){
+            final int counts[] = new int[3];
+            boolean printedClass = false;
+
+            for(int m = 0; m < cf.methodCount(); m++){
+                final MethodInfo method = cf.getMethod(m);
+                final CodeAttribute code = method.getCode();
+                //on a method this bit means synchronized
+                final boolean synchronised = method.checkAccess(Flag.ACC_SUPER_OR_SYNCHRONISED);
+                if(code == null && !synchronised){
+                    continue;
+                }
+
+                try{
+                    final MonitorUsage usage = (code == null) ? new MonitorUsage() :
+                        code.findMonitorUsage(cf, synchronised);
+                    if(!synchronised && usage.getEnterSites().size() == 0){
+                        continue;
+                    }
+
+                    if(!printedClass){
+                        System.out.printf(cf.isInterface() ? 
+                            "\nInterface: %s\n" : "\nClass: %s\n", cf.getName());
+                        printedClass = true;
+                    }
+
+                    System.out.printf("%sMethod: %s%s\n", Grosstab.str(1), 
+                        method.getFriendlyDescriptor(), synchronised ? " [synchronized]" : "");
+                    printSites("monitorenter", usage.getEnterSites());
+                    printSites("monitorexit", usage.getExitSites());
+
+                    if(!usage.getLockedCalls().isEmpty()){
+                        System.out.println(Grosstab.str(2) + "Calls while holding a monitor:");
+                        for(String call: usage.getLockedCalls()){
+                            System.out.println(Grosstab.str(3) + call);
+                        }
+                    }
+
+                    counts[0] += synchronised ? 1 : 0;
+                    counts[1] += usage.getEnterSites().size();
+                    counts[2] += usage.getLockedCalls().size();
+                }
+                catch(InvalidConstantPoolIndex e){
+                    System.out.println(e.getMessage());
+                }
+            }
+
+            if(printedClass){
+                addCounts(classTotals, cf.getName().replace("/", "."), counts);
+                addCounts(packageTotals, cf.getPackageName(), counts);
+            }
+        }
+
+        printLockTotals("class", classTotals);
+        printLockTotals("package", packageTotals);
+    }
+
+    private static void printSites(final String mnemonic, final IntList sites){
+        if(sites.size() > 0){
+            final StringBuffer s = new StringBuffer(Grosstab.str(2));
+            s.append(mnemonic);
+            s.append(" at:");
+            for(int i = 0; i < sites.size(); i++){
+                s.append(" @");
+                s.append(sites.get(i));
+            }
+            System.out.println(s.toString());
+        }
+    }
+
+    private static void addCounts(final Map<String, int[]> totals, final String key, final int[] counts){
+        int total[] = totals.get(key);
+        if(total == null){
+            total = new int[counts.length];
+            totals.put(key, total);
+        }
+        for(int i = 0; i < counts.length; i++){
+            total[i] += counts[i];
+        }
+    }
+
+    private static void printLockTotals(final String kind, final Map<String, int[]> totals){
+        System.out.printf("\nLocking per %s:\n", kind);
+        System.out.printf("%s%12s %12s %12s  %s\n", Grosstab.str(1),
+            "Synchronized", "monitorenter", "Locked calls", "Name");
+        for(Map.Entry<String, int[]> entry: totals.entrySet()){
+            final int counts[] = entry.getValue();
+            System.out.printf("%s%12d %12d %12d  %s\n", Grosstab.str(1),
+                counts[0], counts[1], counts[2], entry.getKey());
+        }
+    }
+
+
+    /*
+    List classes that are never subclassed and methods that
+    are never overridden, all of which could be made final
+    */
+    public static void devirtualization(final ClassFile[] classes){
+        final Devirtualization devirt = new Devirtualization(classes);
+
+        System.out.println("\nClasses never subclassed (could be final):");
+        for(ClassFile cf: devirt.getFinalClasses()){
+            System.out.println(Grosstab.str(1) + cf.getName().replace("/", "."));
+        }
+
+        System.out.println("\nMethods never overridden (could be final):");
+        ClassFile lastClass = null;
+        for(int i = 0; i < devirt.finalMethodCount(); i++){
+            final ClassFile cf = devirt.getFinalMethodClass(i);
+            if(cf != lastClass){
+                System.out.printf("%sClass: %s\n", Grosstab.str(1), cf.getName());
+                lastClass = cf;
+            }
+            System.out.printf("%sMethod: %s\n", Grosstab.str(2), 
+                devirt.getFinalMethod(i).getFriendlyDescriptor());
+        }
+
+        System.out.printf("\nCould be final: %d of %d non-final classes, %d of %d overridable methods in subclassed classes\n\n",
+            devirt.getFinalClasses().size(), devirt.classesChecked(),
+            devirt.finalMethodCount(), devirt.methodsChecked());
+    }
+
+
+    /*
+    Estimate the shallow size of an instance of each class
+    from its fields, ranked by size and then by padding waste
+    */
+    public static void instanceSizes(final ClassFile[] classes){
+        final ObjectLayout objectLayout = new ObjectLayout(classes, compressedOops);
+        final List<ClassLayout> layouts = new ArrayList<ClassLayout>();
+
+        for(ClassFile cf: classes){
+            if(!cf.isInterface()){
+                layouts.add(objectLayout.layoutOf(cf));
+            }
+        }
+
+        Collections.sort(layouts, new Comparator<ClassLayout>(){
+            public int compare(final ClassLayout a, final ClassLayout b){
+                return b.getInstanceSize() - a.getInstanceSize();
+            }
+        });
+
+        System.out.printf("\nEstimated instance sizes (%d byte header, %s):\n", 
+            objectLayout.getHeaderSize(), compressedOops ? "compressed oops" : "uncompressed oops");
+        printLayouts(layouts, false);
+
+        final List<ClassLayout> padded = new ArrayList<ClassLayout>();
+        for(ClassLayout layout: layouts){
+            if(layout.getPadding() > 0){
+                padded.add(layout);
+            }
+        }
+
+        Collections.sort(padded, new Comparator<ClassLayout>(){
+            public int compare(final ClassLayout a, final ClassLayout b){
+                return b.getPadding() - a.getPadding();
+            }
+        });
+
+        System.out.println("\nPadding waste:");
+        printLayouts(padded, true);
+
+        System.out.println("\n* has a superclass that wasn't parsed, so inherited fields are missing\n");
+    }
+
+    private static void printLayouts(final List<ClassLayout> layouts, final boolean showFields){
+        System.out.printf("%s%8s %8s %8s %7s  %s\n", Grosstab.str(1), 
+            "Size", "Fields", "Padding", "Count", "Class");
+
+        for(ClassLayout layout: layouts){
+            System.out.printf("%s%8d %8d %8d %7d  %s%s\n", Grosstab.str(1), 
+                layout.getInstanceSize(), layout.getFieldBytes(), layout.getPadding(),
+                layout.fieldCount(), layout.getClassFile().getName().replace("/", "."),
+                layout.isComplete() ? "" : " *");
+
+            if(showFields){
+                for(int i = 0; i < layout.fieldCount(); i++){
+                    System.out.printf("%s@%-4d %-3d %s %s\n", Grosstab.str(2), 
+                        layout.getOffset(i), layout.getSize(i),
+                        layout.getField(i).getDescriptor(), layout.getField(i).getName());
+                }
+            }
+        }
+    }
+
+
+    /*
+    Flag classes with volatile or frequently written fields packed
+    within a cache line of each other, without padding or @Contended
+    */
+    public static void falseSharing(final ClassFile[] classes){
+        final FalseSharing sharing = new FalseSharing(classes, 
+            new ObjectLayout(classes, compressedOops));
+
+        for(int c = 0; c < sharing.flaggedCount(); c++){
+            final ClassLayout layout = sharing.getFlagged(c);
+            System.out.printf("\nClass: %s (%d bytes)\n", 
+                layout.getClassFile().getName(), layout.getInstanceSize());
+
+            for(IntList group: sharing.getSharedGroups(c)){
+                System.out.printf("%sEach within %d bytes of the next, no padding or @Contended:\n", 
+                    Grosstab.str(1), FalseSharing.CACHE_LINE);
+
+                for(int i = 0; i < group.size(); i++){
+                    final int f = group.get(i);
+                    final FieldInfo field = layout.getField(f);
+                    System.out.printf("%s@%-4d %s%s %s (%d writes)\n", Grosstab.str(2),
+                        layout.getOffset(f), 
+                        field.checkAccess(Flag.ACC_VOLATILE_OR_BRIDGE) ? "volatile " : "",
+                        field.getDescriptor(), field.getName(), sharing.getWrites(layout, f));
+                }
+            }
+        }
+
+        System.out.printf("\nClasses at risk of false sharing: %d\n\n", sharing.flaggedCount());
+    }
+
+
+    /*
+    Estimate the metaspace each class will take once loaded, 
+    worst first, along with per package totals
+    */
+    public static void metaspace(final ClassFile[] classes){
+        final List<MetaspaceEstimate> estimates = new ArrayList<MetaspaceEstimate>();
+        //bytes, classes, referenced classes
+        final Map<String, long[]> packages = new HashMap<String, long[]>();
+        long total = 0;
+
+        for(ClassFile cf: classes){
+            final MetaspaceEstimate estimate = new MetaspaceEstimate(cf);
+            estimates.add(estimate);
+            total += estimate.total();
+
+            long totals[] = packages.get(estimate.getPackage());
+            if(totals == null){
+                totals = new long[3];
+                packages.put(estimate.getPackage(), totals);
+            }
+            totals[0] += estimate.total();
+            totals[1]++;
+            totals[2] += estimate.getReferencedClasses();
+        }
+
+        Collections.sort(estimates, new Comparator<MetaspaceEstimate>(){
+            public int compare(final MetaspaceEstimate a, final MetaspaceEstimate b){
+                return Long.compare(b.total(), a.total());
+            }
+        });
+
+        System.out.println("\nEstimated metaspace per class:");
+        System.out.printf("%s%9s %8s %8s %8s %8s %8s %6s  %s\n", Grosstab.str(1), "Total", 
+            "Klass", "CP", "Symbols", "Methods", "Other", "Refs", "Class");
+        for(MetaspaceEstimate estimate: estimates){
+            System.out.printf("%s%9d %8d %8d %8d %8d %8d %6d  %s\n", Grosstab.str(1), 
+                estimate.total(), estimate.getKlass(), estimate.getConstantPool(), 
+                estimate.getSymbols(), estimate.getMethods(), estimate.getOther(),
+                estimate.getReferencedClasses(), 
+                estimate.getClassFile().getName().replace("/", "."));
+        }
+
+        final List<Map.Entry<String, long[]>> byPackage = 
+            new ArrayList<Map.Entry<String, long[]>>(packages.entrySet());
+        Collections.sort(byPackage, new Comparator<Map.Entry<String, long[]>>(){
+            public int compare(final Map.Entry<String, long[]> a, final Map.Entry<String, long[]> b){
+                return Long.compare(b.getValue()[0], a.getValue()[0]);
+            }
+        });
+
+        System.out.println("\nEstimated metaspace per package:");
+        System.out.printf("%s%9s %8s %10s  %s\n", Grosstab.str(1), "Total", "Classes", "Avg refs", "Package");
+        for(Map.Entry<String, long[]> entry: byPackage){
+            final long totals[] = entry.getValue();
+            System.out.printf("%s%9d %8d %10.2f  %s\n", Grosstab.str(1), totals[0], totals[1],
+                totals[2]/(double)totals[1], entry.getKey());
+        }
+
+        System.out.printf("\nEstimated metaspace for %d classes: %d bytes\n\n", classes.length, total);
+    }
+
+
+    /*
+    Rank the static initialisers by what running them costs, 
+    including every class initialisation they set off in turn
+    */
+    public static void classInit(final ClassFile[] classes){
+        final ClassInit init = new ClassInit(classes);
+
+        final List<Integer> ranked = new ArrayList<Integer>();
+        for(int id = 0; id < init.classCount(); id++){
+            if(init.hasClinit(id)){
+                ranked.add(id);
+            }
+        }
+
+        Collections.sort(ranked, new Comparator<Integer>(){
+            public int compare(final Integer a, final Integer b){
+                final int order = Long.compare(init.getCascadeCost(b), init.getCascadeCost(a));
+                return order != 0 ? order : init.getCascadeClasses(b) - init.getCascadeClasses(a);
+            }
+        });
+
+        System.out.println("\nStatic initialisers by transitive cost (bytecode bytes):");
+        System.out.printf("%s%10s %8s %8s %8s  %s\n", Grosstab.str(1), 
+            "Cascade", "Own", "Classes", "Unparsed", "Class");
+        for(int id: ranked){
+            System.out.printf("%s%10d %8d %8d %8d  %s\n", Grosstab.str(1), 
+                init.getCascadeCost(id), init.getOwnCost(id), init.getCascadeClasses(id),
+                init.getCascadeExternal(id), init.getClassFile(id).getName().replace("/", "."));
+        }
+
+        for(int id: ranked){
+            final ClassFile cf = init.getClassFile(id);
+            System.out.printf("\n%s: %s\n", cf.isInterface() ? "Interface" : "Class", 
+                cf.getName().replace("/", "."));
+            System.out.printf("%s<clinit>: %d bytes, cascade of %d bytes over %d classes\n",
+                Grosstab.str(1), init.getOwnCost(id), init.getCascadeCost(id), 
+                init.getCascadeClasses(id));
+
+            //repeated calls are shown once with a count
+            final Map<String, Integer> calls = new LinkedHashMap<String, Integer>();
+            for(String call: init.getCalls(id)){
+                final Integer count = calls.get(call);
+                calls.put(call, count == null ? 1 : count + 1);
+            }
+            if(!calls.isEmpty()){
+                System.out.printf("%sCalls:\n", Grosstab.str(1));
+                for(Map.Entry<String, Integer> call: calls.entrySet()){
+                    System.out.printf("%s%s%s\n", Grosstab.str(2), call.getKey(),
+                        call.getValue() > 1 ? " x" + call.getValue() : "");
+                }
+            }
+
+            if(init.triggerCount(id) + init.getExternalTriggers(id).size() > 0){
+                System.out.printf("%sInitialises:\n", Grosstab.str(1));
+                for(int t = 0; t < init.triggerCount(id); t++){
+                    final ClassFile trigger = init.getTrigger(id, t);
+                    System.out.printf("%s%s (cascade %d bytes)\n", Grosstab.str(2),
+                        trigger.getName().replace("/", "."), 
+                        init.getCascadeCost(init.getId(trigger.getName())));
+                }
+                for(String name: init.getExternalTriggers(id)){
+                    System.out.printf("%s%s (not parsed)\n", Grosstab.str(2), name.replace("/", "."));
+                }
+            }
+        }
+        System.out.println();
+    }
+
+
+    /*
+    Find reflective calls and class names held as Strings, 
+    totalled by package and then listed class by class
+    */
+    public static void reflection(final ClassFile[] classes){
+        final List<ReflectionScan.Usage> usages;
+        try{
+            usages = ReflectionScan.scan(classes, threads);
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        final int numKinds = ReflectionScan.KINDS.length;
+        //a count per kind, then the class name Strings
+        final Map<String, int[]> packages = new TreeMap<String, int[]>();
+        for(ReflectionScan.Usage usage: usages){
+            if(usage.isEmpty()){
+                continue;
+            }
+
+            final String name = usage.getClassFile().getPackageName();
+            int counts[] = packages.get(name);
+            if(counts == null){
+                counts = new int[numKinds + 1];
+                packages.put(name, counts);
+            }
+            for(int k = 0; k < numKinds; k++){
+                counts[k] += usage.getCount(k);
+            }
+            counts[numKinds] += usage.getClassNames().size();
+        }
+
+        System.out.println("\nReflection and dynamic loading by package:");
+        for(Map.Entry<String, int[]> entry: packages.entrySet()){
+            System.out.printf("%s%s\n", Grosstab.str(1), entry.getKey());
+            final int counts[] = entry.getValue();
+            for(int k = 0; k < numKinds; k++){
+                if(counts[k] > 0){
+                    System.out.printf("%s%-24s %6d\n", Grosstab.str(2), 
+                        ReflectionScan.KINDS[k], counts[k]);
+                }
+            }
+            if(counts[numKinds] > 0){
+                System.out.printf("%s%-24s %6d\n", Grosstab.str(2), 
+                    "Class name Strings", counts[numKinds]);
+            }
+        }
+
+        int numClasses = 0;
+        for(ReflectionScan.Usage usage: usages){
+            if(usage.isEmpty()){
+                continue;
+            }
+            numClasses++;
+
+            final ClassFile cf = usage.getClassFile();
+            System.out.printf("\n%s: %s\n", cf.isInterface() ? "Interface" : "Class",
+                cf.getName().replace("/", "."));
+            for(String site: usage.getSites()){
+                System.out.printf("%s%s\n", Grosstab.str(1), site);
+            }
+            for(String className: usage.getClassNames()){
+                System.out.printf("%sClass name String: \"%s\"\n", Grosstab.str(1), className);
+            }
+        }
+
+        System.out.printf("\n%d of %d classes use reflection or dynamic loading\n\n",
+            numClasses, usages.size());
+    }
+
+
+    /*
+    Count the lambda and string concatenation sites in each method, 
+    showing which capture arguments (and so allocate every time)
+    */
+    public static void indySites(final ClassFile[] classes){
+        //lambdas, capturing lambdas, concatenations, others
+        final int totals[] = new int[4];
+
+        System.out.println("\ninvokedynamic sites:");
+        for(ClassFile cf: classes){
+            boolean printedClass = false;
+
+            for(int m = 0; m < cf.methodCount(); m++){
+                final MethodInfo method = cf.getMethod(m);
+                final CodeAttribute code = method.getCode();
+                if(code == null){
+                    continue;
+                }
+
+                final List<IndySite> sites;
+                try{
+                    sites = code.findIndySites(cf);
+                }
+                catch(InvalidConstantPoolIndex e){
+                    System.out.println(e.getMessage());
+                    continue;
+                }
+                if(sites.isEmpty()){
+                    continue;
+                }
+
+                final int counts[] = new int[4];
+                for(IndySite site: sites){
+                    if(site.getKind() == IndySite.Kind.LAMBDA){
+                        counts[0]++;
+                        counts[1] += site.isCapturing() ? 1 : 0;
+                    } else if(site.getKind() == IndySite.Kind.STRING_CONCAT){
+                        counts[2]++;
+                    } else {
+                        counts[3]++;
+                    }
+                }
+                for(int i = 0; i < counts.length; i++){
+                    totals[i] += counts[i];
+                }
+
+                if(!printedClass){
+                    System.out.printf(cf.isInterface() ? 
+                        "\nInterface: %s\n" : "\nClass: %s\n", cf.getName().replace("/", "."));
+                    printedClass = true;
+                }
+                System.out.printf("%sMethod: %s%s (lambdas %d, capturing %d, concat %d, other %d)\n",
+                    Grosstab.str(1), method.getName(), method.getDescriptor(), 
+                    counts[0], counts[1], counts[2], counts[3]);
+                for(IndySite site: sites){
+                    System.out.printf("%s%5d: %s%s\n", Grosstab.str(2), site.getPc(), site,
+                        site.isCapturing() && site.getKind() != IndySite.Kind.OTHER ? " (captures)" : "");
+                }
+            }
+        }
+
+        System.out.printf("\nLambda sites: %d (%d capturing), string concatenations: %d, other: %d\n\n",
+            totals[0], totals[1], totals[2], totals[3]);
+    }
+
+
+    /*
+    The class hierarchy alone: what each class extends and 
+    implements, and what extends or implements it in turn
+    */
+    public static void hierarchy(final ClassFile[] classes){
+        int numInterfaces = 0;
+
+        for(ClassFile cf: classes){
+            System.out.printf(cf.isInterface() ? 
+                "\nInterface: %s\n" : "\nClass: %s\n", cf.getName().replace("/", "."));
+            numInterfaces += cf.isInterface() ? 1 : 0;
+
+            final StringBuilder modifiers = new StringBuilder();
+            if(cf.checkAccess(Flag.ACC_PUBLIC)){
+                modifiers.append("public ");
+            }
+            if(cf.checkAccess(Flag.ACC_ABSTRACT) && !cf.isInterface()){
+                modifiers.append("abstract ");
+            }
+            if(cf.checkAccess(Flag.ACC_FINAL)){
+                modifiers.append("final ");
+            }
+            if(cf.checkAccess(Flag.ACC_ENUM)){
+                modifiers.append("enum ");
+            }
+            if(cf.checkAccess(Flag.ACC_ANNOTATION)){
+                modifiers.append("annotation ");
+            }
+            if(modifiers.length() > 0){
+                System.out.printf("%sModifiers: %s\n", Grosstab.str(1), modifiers.toString().trim());
+            }
+
+            if(cf.getSuperName() != null && !cf.isInterface()){
+                System.out.printf("%sExtends: %s\n", Grosstab.str(1), cf.getSuperName().replace("/", "."));
+            }
+            for(int i = 0; i < cf.interfaceCount(); i++){
+                System.out.printf("%s%s: %s\n", Grosstab.str(1), cf.isInterface() ? "Extends" : "Implements",
+                    cf.getInterfaceName(i).replace("/", "."));
+            }
+            for(int i = 0; i < cf.childCount(); i++){
+                System.out.printf("%sSubtype: %s\n", Grosstab.str(1), 
+                    cf.getChildClass(i).getName().replace("/", "."));
+            }
+        }
+
+        System.out.printf("\n%d classes, %d interfaces\n\n", classes.length - numInterfaces, numInterfaces);
+    }
+
+
+    /*
+    Summarise every method in the corpus from a columnar table,
+    timing the table build separately from the aggregates over it
+    */
+    public static void methodTable(final ClassFile[] classes){
+        long start = System.nanoTime();
+        final MethodTable table = new MethodTable(classes);
+        final long buildTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        final MethodTable.Column numeric[] = {MethodTable.Column.CODE_LENGTH, 
+            MethodTable.Column.MAX_STACK, MethodTable.Column.MAX_LOCALS, MethodTable.Column.INVOKES};
+        final long sums[] = new long[numeric.length];
+        final double averages[] = new double[numeric.length];
+        final int percentiles[][] = new int[numeric.length][];
+        final int maxima[] = new int[numeric.length];
+        for(int c = 0; c < numeric.length; c++){
+            sums[c] = table.sum(numeric[c]);
+            averages[c] = table.average(numeric[c]);
+            percentiles[c] = table.percentiles(numeric[c], 50, 90, 99);
+            maxima[c] = table.max(numeric[c]);
+        }
+        final long codeByClass[] = table.sumByClass(MethodTable.Column.CODE_LENGTH);
+        final long methodsByClass[] = table.countByClass();
+        final long codeByPackage[] = table.sumByPackage(MethodTable.Column.CODE_LENGTH);
+        final long methodsByPackage[] = table.countByPackage();
+        final long aggregateTime = System.nanoTime() - start;
+
+        System.out.printf("\n%d methods in %d classes, %d packages, %d symbols\n\n", table.rowCount(),
+            table.classCount(), table.packageCount(), table.getSymbols().size());
+        System.out.printf("%s%-12s %10s %9s %6s %6s %6s %6s\n", Grosstab.str(1), "Column", 
+            "Sum", "Avg", "p50", "p90", "p99", "Max");
+        for(int c = 0; c < numeric.length; c++){
+            System.out.printf("%s%-12s %10d %9.2f %6d %6d %6d %6d\n", Grosstab.str(1), 
+                numeric[c].getLabel(), sums[c], averages[c], percentiles[c][0], 
+                percentiles[c][1], percentiles[c][2], maxima[c]);
+        }
+
+        System.out.println("\nLargest classes by code length:");
+        printTopGroups(codeByClass, methodsByClass, table, false);
+
+        System.out.println("\nLargest packages by code length:");
+        printTopGroups(codeByPackage, methodsByPackage, table, true);
+
+        System.out.printf("\nTable built in %.3f ms, aggregates in %.3f ms\n\n", 
+            buildTime / 1e6, aggregateTime / 1e6);
+    }
+
+    /*Top 10 groups by summed code length, with their method counts*/
+    private static void printTopGroups(final long code[], final long methods[],
+        final MethodTable table, final boolean packages){
+        final Integer order[] = new Integer[code.length];
+        for(int i = 0; i < order.length; i++){
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>(){
+            public int compare(final Integer a, final Integer b){
+                return Long.compare(code[b], code[a]);
+            }
+        });
+
+        System.out.printf("%s%10s %8s %9s  %s\n", Grosstab.str(1), "Code", "Methods", "Avg", "Name");
+        for(int i = 0; i < Math.min(10, order.length); i++){
+            final int g = order[i];
+            final String name = packages ? table.getPackageName(g) : table.getClassName(g).replace("/", ".");
+            System.out.printf("%s%10d %8d %9.2f  %s\n", Grosstab.str(1), code[g], methods[g],
+                methods[g] == 0 ? 0 : code[g] / (double)methods[g], name);
+        }
+    }
+
+
     //The toString for ClassFile has some handy stuff such 
     //as printing the constant pool, was helpful for debugging
     public static void verbose(final ClassFile[] classes){
@@ -257,6 +1772,8 @@ public class ParseClass
 
     //Tell user how to invoke options
     public static void usage(){
-        System.out.println("Usage: java ClassFileParser -[m|c|o] filenames...");
+        System.out.println("Usage: java ClassFileParser [--threads=N] [--stats[=N]] [--roots=file] [--inline-limits=35,325,8000] [--no-compressed-oops] [--socket=path] [--include=patterns] -[m|c|o|f|g|r|p|i|a|l|d|z|x|k|t|y|j|q|h|e|s] filenames...");
+        System.out.println("       java ClassFileParser --snapshot=file -w filenames...   (write a snapshot)");
+        System.out.println("       java ClassFileParser --snapshot=file -u [classes...]   (query a snapshot)");
     }
 }
@@ -0,0 +1,273 @@
+import java.lang.management.*;
+import java.util.*;
+
+/**
+ * Collects per-phase timing and allocation figures for the --stats option.
+ *
+ * Phases nest (code decoding happens while members are being parsed), so
+ * time and allocation are charged to whichever phase is innermost at the
+ * time, giving exclusive figures that add up to the total. Each thread keeps
+ * its own counters, which are only combined when the summary is printed,
+ * so phase times are thread time: with --threads they add up to more than
+ * the elapsed time, which is measured once around the whole parse.
+ * When stats are disabled every method returns straight away.
+ *
+ * @author Luke Mercuri
+ */
+public final class ParseStats
+{
+    /*The stages of a ParseClass run that are measured*/
+    public enum Phase
+    {
+        FILE_READ("File read"),
+        CONSTANT_POOL("Constant pool parse"),
+        MEMBERS("Member parse"),
+        CODE_DECODE("Code decode"),
+        HIERARCHY("Hierarchy resolution"),
+        REPORT("Report output");
+
+        private final String label;
+
+        private Phase(final String label){ this.label = label; }
+
+        public String getLabel(){ return label; }
+    }
+
+    private static volatile boolean enabled = false;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+        (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+    /*Counters of every thread that has recorded anything*/
+    private static final List<PhaseTimer> TIMERS = new ArrayList<PhaseTimer>();
+
+    private static final ThreadLocal<PhaseTimer> TIMER = new ThreadLocal<PhaseTimer>(){
+        protected PhaseTimer initialValue(){
+            final PhaseTimer timer = new PhaseTimer();
+            synchronized(TIMERS){
+                TIMERS.add(timer);
+            }
+            return timer;
+        }
+    };
+
+    /*Elapsed time of whole parse runs, however many threads they used*/
+    private static long parseWallNanos = 0;
+    private static int parseThreads = 1;
+
+    /*Every parsed class, for throughput and the slowest classes*/
+    private static final List<ClassTiming> CLASSES = new ArrayList<ClassTiming>();
+
+    private ParseStats(){}
+
+    public static void enable()
+    {
+        if(THREADS.isThreadAllocatedMemorySupported())
+        {
+            THREADS.setThreadAllocatedMemoryEnabled(true);
+        }
+        if(THREADS.isCurrentThreadCpuTimeSupported())
+        {
+            THREADS.setThreadCpuTimeEnabled(true);
+        }
+        enabled = true;
+    }
+
+    public static boolean isEnabled(){ return enabled; }
+
+    /*Enter a phase, pausing whatever phase this thread was in*/
+    public static void begin(final Phase phase)
+    {
+        if(enabled)
+        {
+            TIMER.get().begin(phase);
+        }
+    }
+
+    /*Leave the innermost phase, resuming the one it interrupted*/
+    public static void end()
+    {
+        if(enabled)
+        {
+            TIMER.get().end();
+        }
+    }
+
+    /*Leave any phases left open by a parse that threw part way through*/
+    public static void unwind()
+    {
+        if(enabled)
+        {
+            final PhaseTimer timer = TIMER.get();
+            while(!timer.stack.isEmpty()){
+                timer.end();
+            }
+        }
+    }
+
+    /*Record the total time taken to read and parse one class file*/
+    public static void classParsed(final String fileName, final long bytes, final long nanos)
+    {
+        if(enabled)
+        {
+            synchronized(CLASSES)
+            {
+                CLASSES.add(new ClassTiming(fileName, bytes, nanos));
+            }
+        }
+    }
+
+    /*Record the elapsed time of a whole parse run, timed around the
+    workers, as the per-class and per-phase figures are summed over
+    threads and would overstate it by about the thread count*/
+    public static synchronized void parseFinished(final int numThreads, final long nanos)
+    {
+        if(enabled)
+        {
+            parseWallNanos += nanos;
+            parseThreads = Math.max(parseThreads, numThreads);
+        }
+    }
+
+
+    /*Print the per-phase breakdown, throughput and the slowest N classes*/
+    public static void print(final int slowest)
+    {
+        final int numPhases = Phase.values().length;
+        final long wall[] = new long[numPhases];
+        final long cpu[] = new long[numPhases];
+        final long allocated[] = new long[numPhases];
+
+        synchronized(TIMERS)
+        {
+            for(PhaseTimer timer: TIMERS){
+                for(int p = 0; p < numPhases; p++){
+                    wall[p] += timer.wall[p];
+                    cpu[p] += timer.cpu[p];
+                    allocated[p] += timer.allocated[p];
+                }
+            }
+        }
+
+        System.out.println("\nStatistics:");
+        System.out.printf("%s%-22s %12s %12s %16s\n", Grosstab.str(1),
+            "Phase", "Thread (ms)", "CPU (ms)", "Allocated (KB)");
+        for(Phase phase: Phase.values()){
+            final int p = phase.ordinal();
+            System.out.printf("%s%-22s %12.2f %12.2f %16d\n", Grosstab.str(1),
+                phase.getLabel(), wall[p] / 1e6, cpu[p] / 1e6, allocated[p] / 1024);
+        }
+
+        final List<ClassTiming> classes;
+        synchronized(CLASSES)
+        {
+            classes = new ArrayList<ClassTiming>(CLASSES);
+        }
+
+        long totalBytes = 0;
+        long totalNanos = 0;
+        for(ClassTiming timing: classes){
+            totalBytes += timing.bytes;
+            totalNanos += timing.nanos;
+        }
+
+        /*Phase times are summed over threads, so throughput comes from the
+        parse's own elapsed time where there is one (per-class times
+        only add up to wall time when parsing on a single thread)*/
+        final long elapsed;
+        synchronized(ParseStats.class)
+        {
+            elapsed = parseWallNanos > 0 ? parseWallNanos : totalNanos;
+            if(parseWallNanos > 0)
+            {
+                System.out.printf("\n%sParse wall time: %.2f ms on %d thread%s (%.2f ms summed over classes)\n",
+                    Grosstab.str(1), parseWallNanos / 1e6, parseThreads, 
+                    parseThreads == 1 ? "" : "s", totalNanos / 1e6);
+            }
+        }
+
+        if(elapsed > 0)
+        {
+            System.out.printf("%sThroughput: %.0f bytes/s, %.1f classes/s (%d classes, %d bytes)\n",
+                Grosstab.str(1), totalBytes / (elapsed / 1e9),
+                classes.size() / (elapsed / 1e9), classes.size(), totalBytes);
+        }
+
+        Collections.sort(classes, new Comparator<ClassTiming>(){
+            public int compare(final ClassTiming a, final ClassTiming b){
+                return Long.compare(b.nanos, a.nanos);
+            }
+        });
+
+        if(!classes.isEmpty())
+        {
+            System.out.printf("\n%sSlowest classes:\n", Grosstab.str(1));
+            for(int i = 0; i < slowest && i < classes.size(); i++){
+                final ClassTiming timing = classes.get(i);
+                System.out.printf("%s%10.3f ms %10d bytes  %s\n", Grosstab.str(2),
+                    timing.nanos / 1e6, timing.bytes, timing.fileName);
+            }
+        }
+    }
+
+
+    /*Exclusive per-phase counters for a single thread*/
+    private static final class PhaseTimer
+    {
+        private final long wall[] = new long[Phase.values().length];
+        private final long cpu[] = new long[Phase.values().length];
+        private final long allocated[] = new long[Phase.values().length];
+        private final Deque<Phase> stack = new ArrayDeque<Phase>();
+
+        private long markWall;
+        private long markCpu;
+        private long markAllocated;
+
+        private void begin(final Phase phase)
+        {
+            charge();
+            stack.push(phase);
+        }
+
+        private void end()
+        {
+            charge();
+            stack.pop();
+        }
+
+        /*Charge everything since the last mark to the current phase*/
+        private void charge()
+        {
+            final long nowWall = System.nanoTime();
+            final long nowCpu = THREADS.getCurrentThreadCpuTime();
+            final long nowAllocated = THREADS.getThreadAllocatedBytes(
+                Thread.currentThread().getId());
+
+            if(!stack.isEmpty())
+            {
+                final int p = stack.peek().ordinal();
+                wall[p] += nowWall - markWall;
+                cpu[p] += nowCpu - markCpu;
+                allocated[p] += nowAllocated - markAllocated;
+            }
+
+            markWall = nowWall;
+            markCpu = nowCpu;
+            markAllocated = nowAllocated;
+        }
+    }
+
+    private static final class ClassTiming
+    {
+        private final String fileName;
+        private final long bytes;
+        private final long nanos;
+
+        private ClassTiming(final String fileName, final long bytes, final long nanos)
+        {
+            this.fileName = fileName;
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+    }
+}
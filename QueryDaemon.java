@@ -0,0 +1,182 @@
+import java.io.*;
+import java.net.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Keeps a parsed corpus in memory and answers report queries against it,
+ * so editor integrations and scripts only pay for JVM startup and parsing
+ * once. Queries are one per line, either on stdin or over a Unix domain
+ * socket (--socket=path):
+ *
+ *     m                       -m report over every class
+ *     c java.util.ArrayList   -c report over just the named classes
+ *     quit                    end this session (closes the connection)
+ *     shutdown                stop the daemon (socket only)
+ *
+ * Any report mode can be given, not just m, c and o. The modes that analyse
+ * the corpus as a whole (call graph, reachability, call targets, inlining,
+ * devirtualization, layouts, false sharing and class init) take no class
+ * names, as the named classes alone would give wrong answers rather than a
+ * narrower view. Each response is the report output followed by a line
+ * holding a single ".", and errors are reported on a line starting
+ * "error:", including a report that fails part way through, which leaves
+ * the daemon serving. Connections are served one at a time, as the reports
+ * write straight to System.out, and one that breaks is logged to stderr
+ * before the next is accepted.
+ *
+ * @author Luke Mercuri
+ */
+public class QueryDaemon
+{
+    private final ClassFile classes[];
+    /*Parsed classes by dotted and internal name*/
+    private final Map<String, ClassFile> byName = new HashMap<String, ClassFile>();
+
+    /*Reports whose answer for a class depends on the rest of the corpus*/
+    private static final String CORPUS_MODES = "grpidzxt";
+
+    /*Set by a shutdown query*/
+    private boolean stopped = false;
+
+    public QueryDaemon(final ClassFile[] classes)
+    {
+        this.classes = classes;
+        for(ClassFile cf: classes){
+            byName.put(cf.getName(), cf);
+            byName.put(cf.getName().replace("/", "."), cf);
+        }
+    }
+
+    /*Answer queries from stdin until it closes or quit is read*/
+    public void serve() throws IOException
+    {
+        serve(new BufferedReader(new InputStreamReader(System.in)), System.out);
+    }
+
+    /*Accept connections on a Unix domain socket until a shutdown query*/
+    public void listen(final String socketPath) throws IOException
+    {
+        final Path path = Paths.get(socketPath);
+        Files.deleteIfExists(path);
+
+        final ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        final PrintStream console = System.out;
+
+        try
+        {
+            server.bind(UnixDomainSocketAddress.of(path));
+            System.err.printf("Serving %d classes on %s\n", classes.length, socketPath);
+
+            while(!stopped)
+            {
+                final SocketChannel client = server.accept();
+                /*A client going away mid-query only ends its own connection*/
+                try
+                {
+                    try
+                    {
+                        final BufferedReader in = new BufferedReader(
+                            new InputStreamReader(Channels.newInputStream(client)));
+                        final PrintStream out = new PrintStream(new BufferedOutputStream(
+                            Channels.newOutputStream(client)), false);
+
+                        System.setOut(out);
+                        serve(in, out);
+                    }
+                    finally
+                    {
+                        System.setOut(console);
+                        client.close();
+                    }
+                }
+                catch(IOException e)
+                {
+                    System.err.printf("Connection dropped: %s\n", e.getMessage());
+                }
+            }
+        }
+        finally
+        {
+            server.close();
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /*Read queries a line at a time, writing each response to out*/
+    private void serve(final BufferedReader in, final PrintStream out) throws IOException
+    {
+        String line;
+
+        while(!stopped && (line = in.readLine()) != null)
+        {
+            final String words[] = line.trim().split("\\s+");
+
+            if(words[0].length() == 0)
+            {
+                continue;
+            }
+            else if("quit".equals(words[0]))
+            {
+                break;
+            }
+            else if("shutdown".equals(words[0]))
+            {
+                stopped = true;
+            }
+            else
+            {
+                query(words, out);
+            }
+
+            out.println(".");
+            out.flush();
+        }
+    }
+
+    /*Run a single report over the named classes, or all of them*/
+    private void query(final String words[], final PrintStream out)
+    {
+        final String mode = words[0].startsWith("-") ? words[0].substring(1) : words[0];
+        if(mode.length() != 1)
+        {
+            out.printf("error: unknown query: %s\n", words[0]);
+            return;
+        }
+
+        ClassFile selected[] = classes;
+        if(words.length > 1)
+        {
+            if(CORPUS_MODES.indexOf(Character.toLowerCase(mode.charAt(0))) >= 0)
+            {
+                out.printf("error: %s reports on every class and takes no class names\n", words[0]);
+                return;
+            }
+
+            selected = new ClassFile[words.length - 1];
+            for(int i = 1; i < words.length; i++){
+                selected[i - 1] = byName.get(words[i]);
+                if(selected[i - 1] == null)
+                {
+                    out.printf("error: class not loaded: %s\n", words[i]);
+                    return;
+                }
+            }
+        }
+
+        /*A report tripping over a malformed class shouldn't take the
+        daemon down with it, so the failure becomes this query's answer*/
+        try
+        {
+            if(!ParseClass.report(mode.charAt(0), selected))
+            {
+                out.printf("error: unknown query: %s\n", words[0]);
+            }
+        }
+        catch(RuntimeException e)
+        {
+            out.printf("error: %s failed: %s\n", words[0], e);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Works out which methods can be reached from a set of entry points by
+ * following the call graph. A call to a method is also taken to reach every
+ * override of it in the parsed subclasses, since any of them could be the
+ * one dispatched to. Callbacks from library code (a Runnable handed to a
+ * Thread, say) can't be seen, so methods only called that way need to be
+ * listed as configured roots.
+ *
+ * The walk is a level-by-level breadth first search. Each level's frontier
+ * is split between the worker threads, which share a concurrent visited
+ * bit set so every method is expanded exactly once.
+ *
+ * @author Luke Mercuri
+ */
+public class Reachability
+{
+    /*Frontiers smaller than this aren't worth handing out to threads*/
+    private static final int PARALLEL_THRESHOLD = 4096;
+
+    private final CallGraph graph;
+
+    /*CSR list of overriding methods for each declared method id*/
+    private final int overrideStart[];
+    private final int overrides[];
+
+    /*
+    The overrides are indexed once up front, rather than asking
+    findOverridesForMethod() about every method (which walks the
+    whole subtree each time): overridable methods are keyed by
+    class and signature, then each method with code looks itself
+    up under every one of its ancestors. The hierarchy must already
+    have been resolved
+    */
+    public Reachability(final CallGraph graph, final ClassFile[] classes)
+    {
+        this.graph = graph;
+
+        final Map<String, ClassFile> byName = new HashMap<String, ClassFile>();
+        for(ClassFile cf: classes){
+            if(!byName.containsKey(cf.getName())){
+                byName.put(cf.getName(), cf);
+            }
+        }
+
+        //class name + "." + method name + parameters -> overridable method ids
+        final Map<String, IntList> overridable = new HashMap<String, IntList>();
+        for(int id = 0; id < graph.declaredCount(); id++){
+            final MethodInfo method = graph.getMethodInfo(id);
+
+            //static, private and constructors are never dispatched virtually
+            if(method.checkAccess(Flag.ACC_STATIC) || method.checkAccess(Flag.ACC_PRIVATE) ||
+                method.getName().startsWith("<")){
+                continue;
+            }
+
+            final String key = graph.getOwner(id) + method.getSignature();
+            IntList ids = overridable.get(key);
+            if(ids == null){
+                ids = new IntList(1);
+                overridable.put(key, ids);
+            }
+            ids.add(id);
+        }
+
+        final IntList from = new IntList();
+        final IntList to = new IntList();
+        final Map<ClassFile, Set<String>> ancestors = new IdentityHashMap<ClassFile, Set<String>>();
+
+        for(int id = 0; id < graph.declaredCount(); id++){
+            final MethodInfo method = graph.getMethodInfo(id);
+            //only methods with code can be dispatched to (see findOverride)
+            if(method.getCodeSize() == 0){
+                continue;
+            }
+
+            final ClassFile cf = graph.getClassFile(id);
+            Set<String> parents = ancestors.get(cf);
+            if(parents == null){
+                parents = cf.findAncestors(byName);
+                ancestors.put(cf, parents);
+            }
+
+            final String signature = method.getSignature();
+            for(String parent: parents){
+                final IntList overridden = overridable.get(parent + signature);
+                for(int i = 0; overridden != null && i < overridden.size(); i++){
+                    from.add(overridden.get(i));
+                    to.add(id);
+                }
+            }
+        }
+
+        overrideStart = new int[graph.methodCount() + 1];
+        overrides = new int[from.size()];
+        CallGraph.fillRows(from.toArray(), to.toArray(), overrideStart, overrides);
+    }
+
+
+    /*
+    Ids of every main method and static initialiser, plus any
+    configured roots.  A root is "pkg.Class" for every method in
+    the class, "pkg.Class.method" for every overload, or
+    "pkg.Class.method(descriptor)" for one in particular
+    */
+    public int[] findEntryPoints(final List<String> roots)
+    {
+        final IntList entryPoints = new IntList();
+
+        for(int id = 0; id < graph.declaredCount(); id++){
+            final MethodInfo method = graph.getMethodInfo(id);
+            final String className = graph.getOwner(id).replace("/", ".");
+            final String methodName = className + "." + method.getName();
+
+            boolean entry = "<clinit>".equals(method.getName()) ||
+                ("main".equals(method.getName()) &&
+                 "([Ljava/lang/String;)V".equals(method.getDescriptor()) &&
+                 method.checkAccess(Flag.ACC_STATIC));
+
+            for(int r = 0; r < roots.size() && !entry; r++){
+                final String root = roots.get(r);
+                entry = root.equals(className) || root.equals(methodName) ||
+                    root.equals(methodName + method.getDescriptor());
+            }
+
+            if(entry){
+                entryPoints.add(id);
+            }
+        }
+
+        return entryPoints.toArray();
+    }
+
+
+    /*Every method id reachable from the given entry points*/
+    public ConcurrentBitSet reachableFrom(final int[] entryPoints, final int numThreads)
+        throws InterruptedException
+    {
+        final ConcurrentBitSet visited = new ConcurrentBitSet(graph.methodCount());
+        final ExecutorService pool = (numThreads > 1) ?
+            Executors.newFixedThreadPool(numThreads) : null;
+
+        IntList frontier = new IntList();
+        for(int id: entryPoints){
+            if(visited.set(id)){
+                frontier.add(id);
+            }
+        }
+
+        try
+        {
+            while(frontier.size() > 0)
+            {
+                final int current[] = frontier.toArray();
+
+                if(pool == null || current.length < PARALLEL_THRESHOLD)
+                {
+                    frontier = expand(current, 0, current.length, visited);
+                }
+                else
+                {
+                    /*A few chunks per thread evens out uneven fan-out*/
+                    final int chunk = (current.length + numThreads * 4 - 1) / (numThreads * 4);
+                    final List<Future<IntList>> results = new ArrayList<Future<IntList>>();
+
+                    for(int start = 0; start < current.length; start += chunk){
+                        final int from = start;
+                        final int to = Math.min(start + chunk, current.length);
+                        results.add(pool.submit(new Callable<IntList>(){
+                            public IntList call(){
+                                return expand(current, from, to, visited);
+                            }
+                        }));
+                    }
+
+                    frontier = new IntList(current.length);
+                    for(Future<IntList> result: results){
+                        final IntList next = result.get();
+                        for(int i = 0; i < next.size(); i++){
+                            frontier.add(next.get(i));
+                        }
+                    }
+                }
+            }
+        }
+        catch(ExecutionException e)
+        {
+            throw new IllegalStateException(e.getCause());
+        }
+        finally
+        {
+            if(pool != null)
+            {
+                pool.shutdown();
+            }
+        }
+
+        return visited;
+    }
+
+    /*Visit the callees and overrides of frontier[from..to-1],
+    returning the methods seen for the first time*/
+    private IntList expand(final int frontier[], final int from, final int to,
+        final ConcurrentBitSet visited)
+    {
+        final IntList next = new IntList();
+
+        for(int i = from; i < to; i++){
+            final int id = frontier[i];
+
+            for(int c = 0; c < graph.calleeCount(id); c++){
+                final int callee = graph.getCallee(id, c);
+                if(visited.set(callee)){
+                    next.add(callee);
+                }
+            }
+
+            for(int o = overrideStart[id]; o < overrideStart[id + 1]; o++){
+                if(visited.set(overrides[o])){
+                    next.add(overrides[o]);
+                }
+            }
+        }
+
+        return next;
+    }
+}
@@ -0,0 +1,173 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.*;
+
+/**
+ * Finds the places a class uses reflection or loads classes dynamically:
+ * calls to the reflective APIs, and String constants that look like class
+ * names (the usual argument to Class.forName, or a name kept in a table
+ * to be looked up later). Code like this is slow the first time through
+ * and can't be resolved ahead of time by AOT compilation or class data
+ * sharing, so each site is a candidate for a direct reference instead.
+ *
+ * Each class is scanned independently, so the corpus is split between
+ * worker threads in a single pass, and the per package index is built
+ * from the results afterwards.
+ *
+ * @author Luke Mercuri
+ */
+public class ReflectionScan
+{
+    /*Calls counted as reflection, in the dotted form getMethodCalls() gives*/
+    private static final Map<String, String> APIS = new LinkedHashMap<String, String>();
+    static{
+        APIS.put("java.lang.Class.forName", "Class.forName");
+        APIS.put("java.lang.ClassLoader.loadClass", "ClassLoader.loadClass");
+        APIS.put("java.lang.Class.newInstance", "Class.newInstance");
+        APIS.put("java.lang.reflect.Constructor.newInstance", "Constructor.newInstance");
+        APIS.put("java.lang.reflect.Method.invoke", "Method.invoke");
+        APIS.put("java.lang.reflect.Proxy.newProxyInstance", "Proxy.newProxyInstance");
+    }
+
+    /*
+    Only the Lookup methods that resolve a member (findVirtual, 
+    findStatic, unreflect and so on) count, not lookup() or 
+    privateLookupIn() themselves, so each handle is counted once
+    */
+    private static final String LOOKUP_PREFIX = "java.lang.invoke.MethodHandles$Lookup.";
+    private static final String RESOLVING[] = {"find", "unreflect"};
+
+    /*Two or more dotted identifiers ending in a capitalised simple name*/
+    private static final Pattern CLASS_NAME =
+        Pattern.compile("([a-z_][A-Za-z0-9_]*\\.)+[A-Z][A-Za-z0-9_$]*");
+
+    /*The kinds of usage reported, in column order*/
+    public static final String KINDS[] = {
+        "Class.forName", "ClassLoader.loadClass", "Class.newInstance", 
+        "Constructor.newInstance", "Method.invoke", "MethodHandles.Lookup",
+        "Proxy.newProxyInstance"
+    };
+
+    private ReflectionScan(){}
+
+    /*Scan every class, using the given number of threads, results in argument order*/
+    public static List<Usage> scan(final ClassFile[] classes, final int numThreads)
+        throws InterruptedException
+    {
+        final List<Usage> usages = new ArrayList<Usage>(classes.length);
+
+        if(numThreads <= 1)
+        {
+            for(ClassFile cf: classes){
+                usages.add(scan(cf));
+            }
+            return usages;
+        }
+
+        final ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+        final List<Future<Usage>> results = new ArrayList<Future<Usage>>(classes.length);
+
+        try
+        {
+            for(final ClassFile cf: classes){
+                results.add(pool.submit(new Callable<Usage>(){
+                    public Usage call(){
+                        return scan(cf);
+                    }
+                }));
+            }
+
+            for(Future<Usage> result: results){
+                usages.add(result.get());
+            }
+        }
+        catch(ExecutionException e)
+        {
+            throw new IllegalStateException(e.getCause());
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+
+        return usages;
+    }
+
+    /*Reflective calls and class name constants of a single class*/
+    public static Usage scan(final ClassFile cf)
+    {
+        final Usage usage = new Usage(cf);
+
+        for(int m = 0; m < cf.methodCount(); m++){
+            final MethodInfo method = cf.getMethod(m);
+            final CodeAttribute code = method.getCode();
+            if(code == null){
+                continue;
+            }
+
+            try{
+                for(String call: code.getMethodCalls(cf)){
+                    String kind = APIS.get(call);
+                    if(kind == null && isResolvingLookup(call)){
+                        kind = "MethodHandles.Lookup";
+                    }
+                    if(kind != null){
+                        usage.add(kind, (cf.getName() + "." + method.getName()).replace("/", ".") + 
+                            method.getDescriptor());
+                    }
+                }
+            }
+            catch(InvalidConstantPoolIndex e){
+                System.out.println(e.getMessage());
+            }
+        }
+
+        final String self = cf.getName().replace("/", ".");
+        for(String s: cf.getConstantPool().getStrings()){
+            if(!s.equals(self) && CLASS_NAME.matcher(s).matches()){
+                usage.classNames.add(s);
+            }
+        }
+
+        return usage;
+    }
+
+    private static boolean isResolvingLookup(final String call)
+    {
+        if(call.startsWith(LOOKUP_PREFIX)){
+            for(String prefix: RESOLVING){
+                if(call.startsWith(prefix, LOOKUP_PREFIX.length())){
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+
+    /*What was found in one class*/
+    public static final class Usage
+    {
+        private final ClassFile classFile;
+        private final int counts[] = new int[KINDS.length];
+        /*"kind: method" for each site, in bytecode order*/
+        private final List<String> sites = new ArrayList<String>();
+        private final Set<String> classNames = new TreeSet<String>();
+
+        private Usage(final ClassFile classFile){ this.classFile = classFile; }
+
+        private void add(final String kind, final String method)
+        {
+            counts[Arrays.asList(KINDS).indexOf(kind)]++;
+            sites.add(kind + ": " + method);
+        }
+
+        public ClassFile getClassFile(){ return classFile; }
+
+        public int getCount(final int kind){ return counts[kind]; }
+        public List<String> getSites(){ return sites; }
+        public Set<String> getClassNames(){ return classNames; }
+
+        public boolean isEmpty(){ return sites.isEmpty() && classNames.isEmpty(); }
+    }
+}
@@ -0,0 +1,19 @@
+import jdk.jfr.*;
+
+/**
+ * Java Flight Recorder event covering the production of one of the -[mode]
+ * reports.
+ *
+ * @author Luke Mercuri
+ */
+@Name("ParseClass.Report")
+@Label("Report")
+@Category({"ParseClass", "Analysis"})
+class ReportEvent extends Event
+{
+    @Label("Mode")
+    String mode;
+
+    @Label("Class Count")
+    int classCount;
+}
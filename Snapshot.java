@@ -0,0 +1,491 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * A binary snapshot of an analysed corpus: symbols, classes, hierarchy,
+ * methods and call edges. The file is laid out as flat int sections, big
+ * endian like class files themselves, so a later run can map it and
+ * answer queries straight out of the mapping. Opening one reads the header
+ * and nothing else, and the only objects created afterwards are the Strings
+ * handed back to callers.
+ *
+ * Layout, after an 11 int header of magic, version and counts:
+ *
+ *     symbolStart[symbols+1]    byte offset of each symbol in the blob
+ *     symbolHash[hashSize]      open addressed index, symbol id + 1 (0 = empty)
+ *     symbolClass[symbols]      class id named by each symbol, or -1
+ *     class columns             CLASS_COLUMNS x classes
+ *     interfaceStart/interfaces CSR of interface name symbols per class
+ *     childStart/children       CSR of subtype class ids per class
+ *     method columns            METHOD_COLUMNS x methods
+ *     calleeStart/callees       CSR of call edges by caller
+ *     callerStart/callers       CSR of call edges by callee
+ *     symbol blob               UTF-8 bytes of every symbol
+ *
+ * Methods of parsed classes come first, grouped by class. Methods that are
+ * only ever called follow them, with an owner class id of -1.
+ *
+ * @author Luke Mercuri
+ */
+public class Snapshot
+{
+    private static final int MAGIC = 0x43465053; //"CFPS"
+    private static final int VERSION = 1;
+    private static final int HEADER_INTS = 11;
+
+    /*Class columns*/
+    public static final int CLASS_NAME = 0;
+    public static final int CLASS_SUPER_NAME = 1;
+    public static final int CLASS_SUPER = 2;
+    public static final int CLASS_ACCESS = 3;
+    public static final int CLASS_PACKAGE = 4;
+    public static final int CLASS_FIRST_METHOD = 5;
+    public static final int CLASS_METHOD_COUNT = 6;
+    private static final int CLASS_COLUMNS = 7;
+
+    /*Method columns are MethodTable's, followed by the owner's name,
+    which is all there is for methods of classes that weren't parsed*/
+    private static final int METHOD_OWNER_NAME = MethodTable.Column.values().length;
+    private static final int METHOD_COLUMNS = METHOD_OWNER_NAME + 1;
+
+    private final String path;
+    private final long fileSize;
+    private final ByteBuffer buffer;
+    private final IntBuffer ints;
+
+    private final int symbolCount;
+    private final int classCount;
+    private final int methodCount;
+    private final int declaredCount;
+    private final int edgeCount;
+    private final int hashSize;
+
+    /*Int offsets of each section*/
+    private final int symbolStart;
+    private final int symbolHash;
+    private final int symbolClass;
+    private final int classColumns;
+    private final int interfaceStart;
+    private final int interfaces;
+    private final int childStart;
+    private final int children;
+    private final int methodColumns;
+    private final int calleeStart;
+    private final int callees;
+    private final int callerStart;
+    private final int callers;
+    /*Byte offset of the symbol blob*/
+    private final int symbolBytes;
+
+
+    /*Map a snapshot file, checking only its header*/
+    public static Snapshot open(final String path) throws IOException
+    {
+        final FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+        try
+        {
+            if(channel.size() > Integer.MAX_VALUE)
+            {
+                throw new IOException("snapshot too large to map: " + path);
+            }
+            return new Snapshot(path, channel.size(),
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+        /*The mapping stays valid once the channel is closed*/
+        finally
+        {
+            channel.close();
+        }
+    }
+
+    private Snapshot(final String path, final long fileSize, final ByteBuffer buffer)
+        throws IOException
+    {
+        this.path = path;
+        this.fileSize = fileSize;
+        this.buffer = buffer;
+
+        if(fileSize < 4 * HEADER_INTS || buffer.getInt(0) != MAGIC)
+        {
+            throw new IOException("not a snapshot: " + path);
+        }
+        if(buffer.getInt(4) != VERSION)
+        {
+            throw new IOException("unsupported snapshot version " + buffer.getInt(4));
+        }
+
+        ints = buffer.asIntBuffer();
+        symbolCount = ints.get(2);
+        classCount = ints.get(3);
+        methodCount = ints.get(4);
+        declaredCount = ints.get(5);
+        edgeCount = ints.get(6);
+        final int interfaceCount = ints.get(7);
+        final int childCount = ints.get(8);
+        final int blobLength = ints.get(9);
+        hashSize = ints.get(10);
+
+        symbolStart = HEADER_INTS;
+        symbolHash = symbolStart + symbolCount + 1;
+        symbolClass = symbolHash + hashSize;
+        classColumns = symbolClass + symbolCount;
+        interfaceStart = classColumns + CLASS_COLUMNS * classCount;
+        interfaces = interfaceStart + classCount + 1;
+        childStart = interfaces + interfaceCount;
+        children = childStart + classCount + 1;
+        methodColumns = children + childCount;
+        calleeStart = methodColumns + METHOD_COLUMNS * methodCount;
+        callees = calleeStart + methodCount + 1;
+        callerStart = callees + edgeCount;
+        callers = callerStart + methodCount + 1;
+        symbolBytes = 4 * (callers + edgeCount);
+
+        if((long)symbolBytes + blobLength != fileSize)
+        {
+            throw new IOException("truncated or corrupt snapshot: " + path);
+        }
+    }
+
+
+    /*Write a snapshot of the given (hierarchy resolved) classes*/
+    public static void write(final ClassFile[] classes, final String path) throws IOException
+    {
+        /*First copy of each class, in order.  The table and the graph are
+        both built from these, so a later copy declaring extra methods
+        can't give the graph methods (and edges) the table has no row for*/
+        final List<ClassFile> unique = new ArrayList<ClassFile>();
+        final Map<String, Integer> classIds = new HashMap<String, Integer>();
+        for(ClassFile cf: classes){
+            if(!classIds.containsKey(cf.getName())){
+                classIds.put(cf.getName(), unique.size());
+                unique.add(cf);
+            }
+        }
+
+        final ClassFile uniqueClasses[] = unique.toArray(new ClassFile[unique.size()]);
+        final MethodTable table = new MethodTable(uniqueClasses);
+        final CallGraph graph = CallGraph.build(uniqueClasses);
+        final SymbolTable symbols = new SymbolTable();
+
+        final int numClasses = unique.size();
+        final int classData[] = new int[CLASS_COLUMNS * numClasses];
+        final IntList interfaceFrom = new IntList();
+        final IntList interfaceTo = new IntList();
+        final IntList childFrom = new IntList();
+        final IntList childTo = new IntList();
+
+        for(int id = 0; id < numClasses; id++){
+            final ClassFile cf = unique.get(id);
+            final Integer superId = classIds.get(cf.getSuperName());
+
+            classData[CLASS_NAME * numClasses + id] = symbols.intern(cf.getName());
+            classData[CLASS_SUPER_NAME * numClasses + id] =
+                cf.getSuperName() == null ? -1 : symbols.intern(cf.getSuperName());
+            classData[CLASS_SUPER * numClasses + id] = superId == null ? -1 : superId;
+            classData[CLASS_ACCESS * numClasses + id] = cf.getAccessMask();
+            classData[CLASS_PACKAGE * numClasses + id] = symbols.intern(cf.getPackageName());
+
+            for(int i = 0; i < cf.interfaceCount(); i++){
+                interfaceFrom.add(id);
+                interfaceTo.add(symbols.intern(cf.getInterfaceName(i)));
+            }
+            for(int i = 0; i < cf.childCount(); i++){
+                childFrom.add(id);
+                childTo.add(classIds.get(cf.getChildClass(i).getName()));
+            }
+        }
+
+        /*Table rows are grouped by class, graph ids are remapped onto them*/
+        final int rows = table.rowCount();
+        final int numMethods = rows + graph.methodCount() - graph.declaredCount();
+        final int methodData[] = new int[METHOD_COLUMNS * numMethods];
+        final int rowOf[] = new int[graph.methodCount()];
+        Arrays.fill(rowOf, -1);
+
+        Arrays.fill(classData, CLASS_FIRST_METHOD * numClasses,
+            (CLASS_FIRST_METHOD + 1) * numClasses, rows);
+        for(int row = 0; row < rows; row++){
+            final int owner = table.get(MethodTable.Column.OWNER, row);
+            for(MethodTable.Column column: MethodTable.Column.values()){
+                int value = table.get(column, row);
+                if(column == MethodTable.Column.NAME || column == MethodTable.Column.DESCRIPTOR){
+                    value = symbols.intern(table.getSymbols().get(value));
+                }
+                methodData[column.ordinal() * numMethods + row] = value;
+            }
+            methodData[METHOD_OWNER_NAME * numMethods + row] = classData[CLASS_NAME * numClasses + owner];
+
+            final int first = CLASS_FIRST_METHOD * numClasses + owner;
+            classData[first] = Math.min(classData[first], row);
+            classData[CLASS_METHOD_COUNT * numClasses + owner]++;
+
+            final int id = graph.getId(table.getClassName(owner),
+                table.getSymbols().get(table.get(MethodTable.Column.NAME, row)),
+                table.getSymbols().get(table.get(MethodTable.Column.DESCRIPTOR, row)));
+            if(id >= 0){
+                rowOf[id] = row;
+            }
+        }
+        for(int id = graph.declaredCount(); id < graph.methodCount(); id++){
+            final int row = rows + id - graph.declaredCount();
+            rowOf[id] = row;
+            methodData[MethodTable.Column.OWNER.ordinal() * numMethods + row] = -1;
+            methodData[MethodTable.Column.NAME.ordinal() * numMethods + row] = symbols.intern(graph.getName(id));
+            methodData[MethodTable.Column.DESCRIPTOR.ordinal() * numMethods + row] =
+                symbols.intern(graph.getDescriptor(id));
+            methodData[METHOD_OWNER_NAME * numMethods + row] = symbols.intern(graph.getOwner(id));
+        }
+
+        //any method still without a row (there shouldn't be one) loses its edges
+        final IntList from = new IntList(graph.edgeCount());
+        final IntList to = new IntList(graph.edgeCount());
+        for(int id = 0; id < graph.methodCount(); id++){
+            for(int i = 0; i < graph.calleeCount(id); i++){
+                final int callee = rowOf[graph.getCallee(id, i)];
+                if(rowOf[id] != -1 && callee != -1){
+                    from.add(rowOf[id]);
+                    to.add(callee);
+                }
+            }
+        }
+        final int edgeFrom[] = from.toArray();
+        final int edgeTo[] = to.toArray();
+
+        /*Everything that needs a symbol has one by now*/
+        final int numSymbols = symbols.size();
+        final byte encoded[][] = new byte[numSymbols][];
+        final int symbolData[] = new int[numSymbols + 1];
+        for(int s = 0; s < numSymbols; s++){
+            encoded[s] = symbols.get(s).getBytes(StandardCharsets.UTF_8);
+            symbolData[s + 1] = symbolData[s] + encoded[s].length;
+        }
+
+        int numSlots = 1;
+        while(numSlots < 2 * numSymbols){
+            numSlots <<= 1;
+        }
+        final int hashData[] = new int[numSlots];
+        for(int s = 0; s < numSymbols; s++){
+            int slot = hash(encoded[s], 0, encoded[s].length) & (numSlots - 1);
+            while(hashData[slot] != 0){
+                slot = (slot + 1) & (numSlots - 1);
+            }
+            hashData[slot] = s + 1;
+        }
+
+        final int classOf[] = new int[numSymbols];
+        Arrays.fill(classOf, -1);
+        for(int id = 0; id < numClasses; id++){
+            classOf[classData[CLASS_NAME * numClasses + id]] = id;
+        }
+
+        final DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(path), 1 << 16));
+        try
+        {
+            final int header[] = {MAGIC, VERSION, numSymbols, numClasses, numMethods,
+                rows, edgeFrom.length, interfaceTo.size(), childTo.size(),
+                symbolData[numSymbols], numSlots};
+            writeInts(out, header);
+            writeInts(out, symbolData);
+            writeInts(out, hashData);
+            writeInts(out, classOf);
+            writeInts(out, classData);
+            writeRows(out, interfaceFrom.toArray(), interfaceTo.toArray(), numClasses);
+            writeRows(out, childFrom.toArray(), childTo.toArray(), numClasses);
+            writeInts(out, methodData);
+            writeRows(out, edgeFrom, edgeTo, numMethods);
+            writeRows(out, edgeTo, edgeFrom, numMethods);
+            for(byte[] bytes: encoded){
+                out.write(bytes);
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    private static void writeInts(final DataOutputStream out, final int values[]) throws IOException
+    {
+        for(int value: values){
+            out.writeInt(value);
+        }
+    }
+
+    /*(from, to) pairs as CSR row offsets then columns*/
+    private static void writeRows(final DataOutputStream out, final int from[], final int to[],
+        final int numRows) throws IOException
+    {
+        final int start[] = new int[numRows + 1];
+        final int columns[] = new int[from.length];
+        CallGraph.fillRows(from, to, start, columns);
+        writeInts(out, start);
+        writeInts(out, columns);
+    }
+
+    /*FNV-1a, over the UTF-8 bytes so the reader needn't decode to probe*/
+    private static int hash(final byte bytes[], final int offset, final int length)
+    {
+        int h = 0x811c9dc5;
+        for(int i = offset; i < offset + length; i++){
+            h = (h ^ (bytes[i] & 0xff)) * 0x01000193;
+        }
+        return h;
+    }
+
+
+    public String getPath(){ return path; }
+    public long getFileSize(){ return fileSize; }
+
+    public int symbolCount(){ return symbolCount; }
+    public int classCount(){ return classCount; }
+    public int methodCount(){ return methodCount; }
+    public int edgeCount(){ return edgeCount; }
+
+    /*Methods below this belong to one of the snapshot's classes*/
+    public int declaredCount(){ return declaredCount; }
+
+    public String getSymbol(final int id)
+    {
+        final int start = ints.get(symbolStart + id);
+        final byte bytes[] = new byte[ints.get(symbolStart + id + 1) - start];
+        buffer.get(symbolBytes + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /*Id of a symbol, or -1 if the snapshot doesn't hold it*/
+    public int findSymbol(final String symbol)
+    {
+        final byte wanted[] = symbol.getBytes(StandardCharsets.UTF_8);
+        int slot = hash(wanted, 0, wanted.length) & (hashSize - 1);
+
+        for(int entry = ints.get(symbolHash + slot); entry != 0;
+            slot = (slot + 1) & (hashSize - 1), entry = ints.get(symbolHash + slot))
+        {
+            final int start = symbolBytes + ints.get(symbolStart + entry - 1);
+            final int length = symbolBytes + ints.get(symbolStart + entry) - start;
+            if(length != wanted.length){
+                continue;
+            }
+
+            int i = 0;
+            while(i < length && buffer.get(start + i) == wanted[i]){
+                i++;
+            }
+            if(i == length){
+                return entry - 1;
+            }
+        }
+        return -1;
+    }
+
+    /*Id of a class by dotted or internal name, or -1*/
+    public int findClass(final String name)
+    {
+        final int symbol = findSymbol(name.replace(".", "/"));
+        return symbol < 0 ? -1 : ints.get(symbolClass + symbol);
+    }
+
+    /*Id of a method declared by the class, or -1*/
+    public int findMethod(final int classId, final String name, final String descriptor)
+    {
+        final int nameId = findSymbol(name);
+        final int descriptorId = findSymbol(descriptor);
+        final int first = getClassColumn(CLASS_FIRST_METHOD, classId);
+
+        for(int m = first; m < first + getClassColumn(CLASS_METHOD_COUNT, classId); m++){
+            if(get(MethodTable.Column.NAME, m) == nameId && get(MethodTable.Column.DESCRIPTOR, m) == descriptorId){
+                return m;
+            }
+        }
+        return -1;
+    }
+
+
+    public int getClassColumn(final int column, final int classId)
+    {
+        return ints.get(classColumns + column * classCount + classId);
+    }
+
+    public String getClassName(final int classId){ return getSymbol(getClassColumn(CLASS_NAME, classId)); }
+
+    /*Superclass within the snapshot, or -1 (see getSuperName)*/
+    public int getSuperClass(final int classId){ return getClassColumn(CLASS_SUPER, classId); }
+
+    public String getSuperName(final int classId)
+    {
+        final int symbol = getClassColumn(CLASS_SUPER_NAME, classId);
+        return symbol < 0 ? null : getSymbol(symbol);
+    }
+
+    public boolean checkAccess(final int classId, final Flag flag)
+    {
+        return (getClassColumn(CLASS_ACCESS, classId) & flag.val()) != 0;
+    }
+
+    public int interfaceCount(final int classId)
+    {
+        return ints.get(interfaceStart + classId + 1) - ints.get(interfaceStart + classId);
+    }
+
+    public String getInterfaceName(final int classId, final int i)
+    {
+        return getSymbol(ints.get(interfaces + ints.get(interfaceStart + classId) + i));
+    }
+
+    public int childCount(final int classId)
+    {
+        return ints.get(childStart + classId + 1) - ints.get(childStart + classId);
+    }
+
+    public int getChild(final int classId, final int i)
+    {
+        return ints.get(children + ints.get(childStart + classId) + i);
+    }
+
+
+    /*A MethodTable column of a method, the owner being -1 for undeclared methods*/
+    public int get(final MethodTable.Column column, final int method)
+    {
+        return ints.get(methodColumns + column.ordinal() * methodCount + method);
+    }
+
+    public String getOwnerName(final int method)
+    {
+        return getSymbol(ints.get(methodColumns + METHOD_OWNER_NAME * methodCount + method));
+    }
+
+    public String getMethodName(final int method){ return getSymbol(get(MethodTable.Column.NAME, method)); }
+    public String getDescriptor(final int method){ return getSymbol(get(MethodTable.Column.DESCRIPTOR, method)); }
+
+    /*Dotted name in the same style as the -c report, plus the descriptor*/
+    public String getDisplayName(final int method)
+    {
+        return (getOwnerName(method) + "." + getMethodName(method)).replace("/", ".") + getDescriptor(method);
+    }
+
+    public int calleeCount(final int method)
+    {
+        return ints.get(calleeStart + method + 1) - ints.get(calleeStart + method);
+    }
+
+    public int getCallee(final int method, final int i)
+    {
+        return ints.get(callees + ints.get(calleeStart + method) + i);
+    }
+
+    public int callerCount(final int method)
+    {
+        return ints.get(callerStart + method + 1) - ints.get(callerStart + method);
+    }
+
+    public int getCaller(final int method, final int i)
+    {
+        return ints.get(callers + ints.get(callerStart + method) + i);
+    }
+}
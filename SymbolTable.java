@@ -0,0 +1,37 @@
+import java.util.*;
+
+/**
+ * Gives each distinct String an int id, in the order they are first seen,
+ * so tables can hold names as primitive columns and compare them by id.
+ *
+ * @author Luke Mercuri
+ */
+public class SymbolTable
+{
+    private final Map<String, Integer> ids = new HashMap<String, Integer>();
+    private final List<String> symbols = new ArrayList<String>();
+
+    /*Id of the symbol, adding it if it's new*/
+    public int intern(final String symbol)
+    {
+        Integer id = ids.get(symbol);
+        if(id == null)
+        {
+            id = symbols.size();
+            ids.put(symbol, id);
+            symbols.add(symbol);
+        }
+        return id;
+    }
+
+    /*Id of the symbol, or -1 if it has never been interned*/
+    public int getId(final String symbol)
+    {
+        final Integer id = ids.get(symbol);
+        return id == null ? -1 : id;
+    }
+
+    public String get(final int id){ return symbols.get(id); }
+
+    public int size(){ return symbols.size(); }
+}
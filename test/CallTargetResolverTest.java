@@ -0,0 +1,86 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * Checks CallTargetResolver against a small hierarchy compiled alongside
+ * it, in particular that classes inheriting an interface default method
+ * resolve to the interface rather than java/lang/Object.
+ *
+ * Run with the parser's classes on the classpath:
+ *     javac -cp out -d out test/*.java && java -cp out CallTargetResolverTest
+ *
+ * @author Luke Mercuri
+ */
+public class CallTargetResolverTest
+{
+    interface Greeter { default String greet(){ return "hi"; } }
+
+    //redeclares the default, so is more specific than Greeter
+    interface Loud extends Greeter { default String greet(){ return "HI"; } }
+
+    //re-abstracts it
+    interface Quiet extends Greeter { String greet(); }
+
+    static class Plain implements Greeter {}
+    static class Shouter implements Loud, Greeter {}
+    static class Polite implements Greeter { public String greet(){ return "hello"; } }
+    static class Inheritor extends Plain {}
+    static abstract class Mute implements Quiet {}
+    static class Whisperer extends Mute { public String greet(){ return "..."; } }
+
+    private static final String PREFIX = "CallTargetResolverTest$";
+    private static int failures = 0;
+
+    public static void main(final String[] args) throws Exception
+    {
+        final String names[] = {"Greeter", "Loud", "Quiet", "Plain", "Shouter",
+            "Polite", "Inheritor", "Mute", "Whisperer"};
+        final ClassFile classes[] = new ClassFile[names.length];
+
+        for(int i = 0; i < names.length; i++){
+            final String fileName = PREFIX + names[i] + ".class";
+            final InputStream in = CallTargetResolverTest.class.getResourceAsStream(fileName);
+            try{
+                classes[i] = new ClassFile(in, fileName);
+            }
+            finally{
+                in.close();
+            }
+        }
+        ClassFile.resolveHierarchy(classes);
+
+        final CallTargetResolver resolver = new CallTargetResolver(classes);
+        final String descriptor = "()Ljava/lang/String;";
+
+        check(resolver.resolve(PREFIX + "Plain", "greet", descriptor), "Greeter");
+        check(resolver.resolve(PREFIX + "Inheritor", "greet", descriptor), "Greeter");
+        check(resolver.resolve(PREFIX + "Shouter", "greet", descriptor), "Loud");
+        check(resolver.resolve(PREFIX + "Polite", "greet", descriptor), "Polite");
+        check(resolver.resolve(PREFIX + "Quiet", "greet", descriptor), "Whisperer");
+        check(resolver.resolve(PREFIX + "Greeter", "greet", descriptor),
+            "Greeter", "Loud", "Polite", "Whisperer");
+
+        if(failures > 0)
+        {
+            System.out.printf("%d check(s) failed\n", failures);
+            System.exit(1);
+        }
+        System.out.println("CallTargetResolverTest passed");
+    }
+
+    /*The targets should be exactly the given classes, in any order*/
+    private static void check(final List<String> targets, final String... expected)
+    {
+        final Set<String> wanted = new TreeSet<String>();
+        for(String name: expected){
+            wanted.add(PREFIX + name);
+        }
+
+        final Set<String> actual = targets == null ? null : new TreeSet<String>(targets);
+        if(!wanted.equals(actual))
+        {
+            System.out.printf("FAIL: expected %s, got %s\n", wanted, actual);
+            failures++;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+
+/**
+ * Checks ClassFileCache's hits and misses by path and by content, that a
+ * changed file is parsed again, that the least recently used classes are
+ * evicted once over the size limit, and that each lookup gets a class of
+ * its own carrying the filename it asked for.
+ *
+ * Run with the parser's classes on the classpath:
+ *     javac -cp out -d out test/*.java && java -cp out ClassFileCacheTest
+ *
+ * @author Luke Mercuri
+ */
+public class ClassFileCacheTest
+{
+    private static int failures = 0;
+
+    public static void main(final String[] args) throws Exception
+    {
+        final byte intList[] = readClass("IntList.class");
+        final byte symbolTable[] = readClass("SymbolTable.class");
+        final byte grosstab[] = readClass("Grosstab.class");
+
+        final Path dir = Files.createTempDirectory("ClassFileCacheTest");
+        try{
+            byPath(dir, intList);
+            byContent(intList);
+            eviction(dir, intList, symbolTable, grosstab);
+        }
+        finally{
+            for(File f: dir.toFile().listFiles()){
+                f.delete();
+            }
+            Files.delete(dir);
+        }
+
+        if(failures > 0)
+        {
+            System.out.printf("%d check(s) failed\n", failures);
+            System.exit(1);
+        }
+        System.out.println("ClassFileCacheTest passed");
+    }
+
+    /*Hits while the file is unchanged, a miss once its mtime moves*/
+    private static void byPath(final Path dir, final byte[] contents) throws Exception
+    {
+        final ClassFileCache cache = new ClassFileCache(1 << 30);
+        final Path path = write(dir, "IntList.class", contents);
+
+        final ClassFile first = cache.get(path.toString());
+        final ClassFile second = cache.get(path.toString());
+        check("path miss then hit", cache.getMisses() == 1 && cache.getHits() == 1);
+        check("path hit is a separate copy", first != second && first.getName().equals(second.getName()));
+
+        Files.setLastModifiedTime(path, FileTime.fromMillis(
+            Files.getLastModifiedTime(path).toMillis() + 60000));
+        cache.get(path.toString());
+        check("changed mtime misses", cache.getMisses() == 2 && cache.getHits() == 1);
+        check("changed file replaces its entry", cache.size() == 1);
+
+        cache.invalidate(path.toString());
+        check("invalidate drops the entry", cache.size() == 0 && cache.getBytes() == 0);
+        cache.get(path.toString());
+        check("invalidated path misses", cache.getMisses() == 3);
+    }
+
+    /*Identical bytes hit whatever they're called, but keep the caller's name*/
+    private static void byContent(final byte[] contents) throws Exception
+    {
+        final ClassFileCache cache = new ClassFileCache(1 << 30);
+
+        final ClassFile a = cache.get(contents, "a/IntList.class");
+        final ClassFile b = cache.get(contents, "b/IntList.class");
+        check("content miss then hit", cache.getMisses() == 1 && cache.getHits() == 1);
+        check("content hit keeps its own filename", "a/IntList.class".equals(a.getDisplayName()) &&
+            "b/IntList.class".equals(b.getDisplayName()));
+    }
+
+    /*With room for only one class, each new one evicts the last*/
+    private static void eviction(final Path dir, final byte[]... classes) throws Exception
+    {
+        long largest = 0;
+        final String paths[] = new String[classes.length];
+        for(int i = 0; i < classes.length; i++){
+            paths[i] = write(dir, "Evict" + i + ".class", classes[i]).toString();
+            largest = Math.max(largest, Footprint.of(new ClassFile(paths[i])).total());
+        }
+
+        final ClassFileCache cache = new ClassFileCache(largest);
+        for(String path: paths){
+            cache.get(path);
+        }
+        check("over the limit evicts", cache.size() == 1 &&
+            cache.getEvictions() == classes.length - 1 && cache.getBytes() <= largest);
+
+        cache.get(paths[paths.length - 1]);
+        check("newest class is kept", cache.getHits() == 1);
+        cache.get(paths[0]);
+        check("evicted class is parsed again", cache.getMisses() == classes.length + 1);
+    }
+
+    private static byte[] readClass(final String name) throws IOException
+    {
+        final InputStream in = ClassFileCacheTest.class.getResourceAsStream("/" + name);
+        try{
+            return in.readAllBytes();
+        }
+        finally{
+            in.close();
+        }
+    }
+
+    private static Path write(final Path dir, final String name, final byte[] contents) throws IOException
+    {
+        return Files.write(dir.resolve(name), contents);
+    }
+
+    private static void check(final String what, final boolean passed)
+    {
+        if(!passed)
+        {
+            System.out.printf("FAIL: %s\n", what);
+            failures++;
+        }
+    }
+}
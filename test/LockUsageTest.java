@@ -0,0 +1,124 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * Checks CodeAttribute.findMonitorUsage() against synchronized blocks
+ * compiled alongside it, in particular blocks left early, whose
+ * monitorexit comes before code that still runs under the lock.
+ *
+ * Run with the parser's classes on the classpath:
+ *     javac -cp out -d out test/*.java && java -cp out LockUsageTest
+ *
+ * @author Luke Mercuri
+ */
+public class LockUsageTest
+{
+    private static int failures = 0;
+
+    private final Object lock = new Object();
+    private boolean flag;
+
+    static void first(){}
+    static void second(){}
+    static void third(){}
+    static void outside(){}
+
+    void earlyReturn(){
+        synchronized(lock){
+            if(flag){
+                first();
+                return;
+            }
+            second();
+        }
+        outside();
+    }
+
+    void earlyBreak(){
+        for(int i = 0; i < 3; i++){
+            synchronized(lock){
+                if(flag){
+                    first();
+                    break;
+                }
+                second();
+            }
+        }
+        outside();
+    }
+
+    void nested(){
+        synchronized(lock){
+            first();
+            synchronized(this){
+                if(flag){
+                    return;
+                }
+                second();
+            }
+            third();
+        }
+        outside();
+    }
+
+    void switched(final int i){
+        synchronized(lock){
+            switch(i){
+                case 0: first(); return;
+                case 1: second(); break;
+                default: third(); return;
+            }
+        }
+        outside();
+    }
+
+    public static void main(final String[] args) throws Exception
+    {
+        final String fileName = "LockUsageTest.class";
+        final InputStream in = LockUsageTest.class.getResourceAsStream(fileName);
+        final ClassFile cf;
+        try{
+            cf = new ClassFile(in, fileName);
+        }
+        finally{
+            in.close();
+        }
+
+        check(cf, "earlyReturn", "first", "second");
+        check(cf, "earlyBreak", "first", "second");
+        check(cf, "nested", "first", "second", "third");
+        check(cf, "switched", "first", "second", "third");
+
+        if(failures > 0)
+        {
+            System.out.printf("%d check(s) failed\n", failures);
+            System.exit(1);
+        }
+        System.out.println("LockUsageTest passed");
+    }
+
+    /*The calls made under a lock should be exactly the given static methods*/
+    private static void check(final ClassFile cf, final String methodName, final String... expected)
+        throws InvalidConstantPoolIndex
+    {
+        MethodInfo method = null;
+        for(int m = 0; m < cf.methodCount(); m++){
+            if(cf.getMethod(m).getName().equals(methodName)){
+                method = cf.getMethod(m);
+            }
+        }
+
+        final Set<String> wanted = new TreeSet<String>(Arrays.asList(expected));
+        final Set<String> actual = new TreeSet<String>();
+        for(String call: method.getCode().findMonitorUsage(cf, false).getLockedCalls()){
+            //just the method name, eg "LockUsageTest.first" -> first
+            actual.add(call.substring(call.lastIndexOf('.') + 1));
+        }
+
+        if(!wanted.equals(actual))
+        {
+            System.out.printf("FAIL: %s expected %s, got %s\n", methodName, wanted, actual);
+            failures++;
+        }
+    }
+}